@@ -0,0 +1,92 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Client side of the load balancer binary protocol (version 1).
+ * Header: magic(1) version(1) opcode(1) flags(1) payloadLength(4) requestId(8).
+ */
+public class BinaryFrame {
+
+    public static final byte MAGIC = (byte) 0xB1;
+    public static final byte VERSION = 1;
+    public static final int HEADER_LENGTH = 16;
+
+    public static final byte OP_LIST_SERVERS = 0x01;
+    public static final byte OP_CONNECT = 0x02;
+    public static final byte OP_FORWARD = 0x03;
+    public static final byte OP_ERROR = 0x21;
+    public static final byte OP_RESPONSE = 0x22;
+
+    private final byte opcode;
+    private final long requestId;
+    private final ByteBuffer payload;
+
+    private BinaryFrame(byte opcode, long requestId, ByteBuffer payload) {
+        this.opcode = opcode;
+        this.requestId = requestId;
+        this.payload = payload;
+    }
+
+    public byte getOpcode() {
+        return opcode;
+    }
+
+    public long getRequestId() {
+        return requestId;
+    }
+
+    public ByteBuffer getPayload() {
+        return payload;
+    }
+
+    public String getPayloadAsString() {
+        return StandardCharsets.UTF_8.decode(payload.duplicate()).toString();
+    }
+
+    public static void write(SocketChannel channel, byte opcode, long requestId, byte[] payload) throws IOException {
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_LENGTH + payload.length);
+        frame.put(MAGIC).put(VERSION).put(opcode).put((byte) 0).putInt(payload.length).putLong(requestId);
+        frame.put(payload).flip();
+        while (frame.hasRemaining()) {
+            channel.write(frame);
+        }
+    }
+
+    public static BinaryFrame read(SocketChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        readFully(channel, header);
+        header.flip();
+        if (header.get(0) != MAGIC) {
+            throw new IOException("Invalid frame magic from LoadBalancer");
+        }
+        ByteBuffer payload = ByteBuffer.allocate(header.getInt(4));
+        readFully(channel, payload);
+        return new BinaryFrame(header.get(2), header.getLong(8), payload.flip());
+    }
+
+    public static byte protocolCode(String protocol) {
+        return switch (protocol) {
+            case "tcp" -> 1;
+            case "udp" -> 2;
+            default -> 3;
+        };
+    }
+
+    public static String protocolName(byte code) {
+        return switch (code) {
+            case 1 -> "tcp";
+            case 2 -> "udp";
+            default -> "http";
+        };
+    }
+
+    private static void readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) == -1) {
+                throw new IOException("Connection closed by LoadBalancer");
+            }
+        }
+    }
+}
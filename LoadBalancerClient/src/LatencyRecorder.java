@@ -0,0 +1,151 @@
+import java.io.PrintStream;
+
+/**
+ * Log-linear histogram of latencies in nanoseconds, laid out the way HdrHistogram is: every power of two is split
+ * into 128 linear sub-buckets, so any recorded value is reported within 1% of what was measured, from 1ns up to
+ * about 18 minutes. Recording is one array increment. Each load generator thread owns its recorders and they are
+ * merged once the run is over, so nothing here is thread-safe.
+ */
+public class LatencyRecorder {
+
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long sumNanos;
+    private long minNanos = Long.MAX_VALUE;
+    private long maxNanos;
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts[bucketOf(value)]++;
+        count++;
+        sumNanos += value;
+        minNanos = Math.min(minNanos, value);
+        maxNanos = Math.max(maxNanos, value);
+    }
+
+    public void add(LatencyRecorder other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        sumNanos += other.sumNanos;
+        minNanos = Math.min(minNanos, other.minNanos);
+        maxNanos = Math.max(maxNanos, other.maxNanos);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    public long getMinNanos() {
+        return count == 0 ? 0 : minNanos;
+    }
+
+    public double getMeanNanos() {
+        return count == 0 ? 0 : (double) sumNanos / count;
+    }
+
+    /**
+     * Value at the given percentile (0 to 100), as the highest value equivalent to its bucket but never above the
+     * largest value recorded; 0 if nothing was recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(count * Math.min(percentile, 100.0) / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), maxNanos);
+            }
+        }
+        return maxNanos;
+    }
+
+    /**
+     * Prints the percentile distribution in HdrHistogram's text layout (value in milliseconds, percentile, total
+     * count and 1/(1-percentile)), stepping through each halving of the remaining tail in {@code ticksPerHalf} steps.
+     */
+    public void printDistribution(PrintStream out, int ticksPerHalf) {
+        out.printf("%12s %14s %10s %14s%n%n", "Value(ms)", "Percentile", "TotalCount", "1/(1-Percentile)");
+        if (count == 0) {
+            return;
+        }
+        double percentile = 0;
+        double step = 50.0 / ticksPerHalf;
+        double nextHalf = 50.0;
+        while (true) {
+            long value = getValueAtPercentile(percentile);
+            long below = countAtOrBelow(value);
+            if (below >= count) {
+                break;
+            }
+            out.printf("%12.3f %14.12f %10d %14.2f%n", value / NANOS_PER_MILLI, percentile / 100.0, below,
+                    1 / (1 - percentile / 100.0));
+            percentile += step;
+            if (percentile >= nextHalf) {
+                percentile = nextHalf;
+                step /= 2;
+                nextHalf += (100.0 - nextHalf) / 2;
+            }
+        }
+        out.printf("%12.3f %14.12f %10d%n", maxNanos / NANOS_PER_MILLI, 1.0, count);
+        out.printf("#[Mean    = %12.3f, StdDeviation   = %12.3f]%n", getMeanNanos() / NANOS_PER_MILLI,
+                getStdDeviationNanos() / NANOS_PER_MILLI);
+        out.printf("#[Max     = %12.3f, Total count    = %12d]%n", maxNanos / NANOS_PER_MILLI, count);
+        out.printf("#[Buckets = %12d, SubBuckets     = %12d]%n", BUCKETS / SUB_BUCKETS, SUB_BUCKETS);
+    }
+
+    private long countAtOrBelow(long value) {
+        long total = 0;
+        for (int i = 0; i <= bucketOf(value); i++) {
+            total += counts[i];
+        }
+        return total;
+    }
+
+    private double getStdDeviationNanos() {
+        double mean = getMeanNanos();
+        double squares = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            if (counts[i] != 0) {
+                double deviation = Math.min(upperBoundOf(i), maxNanos) - mean;
+                squares += deviation * deviation * counts[i];
+            }
+        }
+        return count == 0 ? 0 : Math.sqrt(squares / count);
+    }
+
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return (1L << exponent) + (bucket % SUB_BUCKETS + 1) * width - 1;
+    }
+}
@@ -0,0 +1,676 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Open-loop load generator for the load balancer, speaking the same protocols as the interactive client.
+ *
+ * Requests go out at a constant rate no matter how fast responses come back: request n is due at
+ * {@code start + n / rate}, and its latency is measured from that intended time rather than from when it was
+ * actually written. A stall on the load balancer therefore shows up as the latency every request scheduled during
+ * the stall really saw, instead of silently lowering the send rate (coordinated omission). Requests are pipelined
+ * on long-lived connections and answers come back in order, so each connection keeps a queue of intended times.
+ *
+ * Connections are spread over a few selector threads, each with its own schedule and histograms, merged once the
+ * run is over. The mix picks an operation per request:
+ * <ul>
+ *   <li>case1 - "case : 1" server list on a framed connection</li>
+ *   <li>case2 - "case : 2 - tcp" server selection on a framed connection</li>
+ *   <li>tcp / udp - "case : 3" forward on a framed connection bound to a tcp / udp server</li>
+ *   <li>http - HTTP/1.1 keep-alive request, POST with the payload as body or GET when it is empty</li>
+ * </ul>
+ *
+ * Usage: java LoadGenerator [--host=localhost] [--port=8080] [--rate=2000] [--connections=1000] [--threads=2]
+ * [--duration=30] [--warmup=5] [--payload=64] [--drain=5] [--mix=tcp:50,http:30,udp:10,case1:5,case2:5]
+ * [--distribution]
+ */
+public class LoadGenerator {
+
+    private enum Kind {
+        FRAMED_TCP, FRAMED_UDP, HTTP
+    }
+
+    private enum Operation {
+        CASE1("case1", Kind.FRAMED_TCP),
+        CASE2("case2", Kind.FRAMED_TCP),
+        TCP("tcp", Kind.FRAMED_TCP),
+        UDP("udp", Kind.FRAMED_UDP),
+        HTTP("http", Kind.HTTP);
+
+        private final String key;
+        private final Kind kind;
+
+        Operation(String key, Kind kind) {
+            this.key = key;
+            this.kind = kind;
+        }
+
+        static Operation of(String key) {
+            for (Operation operation : values()) {
+                if (operation.key.equals(key)) {
+                    return operation;
+                }
+            }
+            throw new IllegalArgumentException("Unknown operation in mix: " + key);
+        }
+    }
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    private static final double NANOS_PER_MILLI = 1_000_000.0;
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final byte[] HEADER_END = {'\r', '\n', '\r', '\n'};
+    private static final byte[] CONTENT_LENGTH = "content-length:".getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[] LEGACY_ERROR = "Fail connect to server".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] NO_SERVER = "No Available use Server".getBytes(StandardCharsets.UTF_8);
+
+    private final String host;
+    private final InetSocketAddress address;
+    private final int rate;
+    private final int connections;
+    private final int threads;
+    private final long durationNanos;
+    private final long warmupNanos;
+    private final long drainNanos;
+    private final int payloadBytes;
+    private final Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+    private final boolean distribution;
+    private final Map<Operation, byte[]> requests = new EnumMap<>(Operation.class);
+
+    private volatile long startNanos;
+    private volatile boolean aborted;
+
+    private LoadGenerator(Map<String, String> options) {
+        host = options.getOrDefault("host", "localhost");
+        address = new InetSocketAddress(host, Integer.parseInt(options.getOrDefault("port", "8080")));
+        if (address.isUnresolved()) {
+            throw new IllegalArgumentException("Cannot resolve host: " + host);
+        }
+        rate = Integer.parseInt(options.getOrDefault("rate", "2000"));
+        connections = Integer.parseInt(options.getOrDefault("connections", "1000"));
+        threads = Integer.parseInt(options.getOrDefault("threads", "2"));
+        durationNanos = (long) (Double.parseDouble(options.getOrDefault("duration", "30")) * NANOS_PER_SECOND);
+        warmupNanos = (long) (Double.parseDouble(options.getOrDefault("warmup", "5")) * NANOS_PER_SECOND);
+        drainNanos = (long) (Double.parseDouble(options.getOrDefault("drain", "5")) * NANOS_PER_SECOND);
+        payloadBytes = Integer.parseInt(options.getOrDefault("payload", "64"));
+        distribution = options.containsKey("distribution");
+        for (String entry : options.getOrDefault("mix", "tcp:50,http:30,udp:10,case1:5,case2:5").split(",")) {
+            String[] parts = entry.trim().split(":");
+            int weight = parts.length > 1 ? Integer.parseInt(parts[1]) : 1;
+            if (weight > 0) {
+                mix.put(Operation.of(parts[0]), weight);
+            }
+        }
+        if (mix.isEmpty() || rate <= 0 || threads <= 0 || connections < threads) {
+            throw new IllegalArgumentException("Need a non-empty mix, a positive rate and at least one connection per thread");
+        }
+        String payload = "x".repeat(payloadBytes);
+        requests.put(Operation.CASE1, frame("case : 1"));
+        requests.put(Operation.CASE2, frame("case : 2 - tcp"));
+        requests.put(Operation.TCP, frame("case : 3 - " + payload));
+        requests.put(Operation.UDP, frame("case : 3 - " + payload));
+        requests.put(Operation.HTTP, (payloadBytes > 0
+                ? "POST /load HTTP/1.1\r\nHost: " + host + "\r\nContent-Length: " + payloadBytes + "\r\n\r\n" + payload
+                : "GET /load HTTP/1.1\r\nHost: " + host + "\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + arg);
+            }
+            String[] option = arg.substring(2).split("=", 2);
+            options.put(option[0], option.length > 1 ? option[1] : "true");
+        }
+        LoadGenerator generator;
+        try {
+            generator = new LoadGenerator(options);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+            return;
+        }
+        generator.run();
+    }
+
+    private void run() throws InterruptedException {
+        System.out.printf("Target %d req/s for %.1fs (+%.1fs warm-up) over %d connections on %d threads, %d byte payload%n",
+                rate, durationNanos / 1e9, warmupNanos / 1e9, connections, threads, payloadBytes);
+        StringBuilder weights = new StringBuilder("Mix");
+        mix.forEach((operation, weight) -> weights.append(' ').append(operation.key).append(':').append(weight));
+        System.out.println(weights);
+
+        CyclicBarrier started = new CyclicBarrier(threads, () -> startNanos = System.nanoTime());
+        Worker[] workers = new Worker[threads];
+        Thread[] running = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            int share = connections / threads + (i < connections % threads ? 1 : 0);
+            workers[i] = new Worker(i, share, started);
+            running[i] = new Thread(workers[i], "load-" + i);
+            running[i].start();
+        }
+        for (Thread thread : running) {
+            thread.join();
+        }
+        if (aborted) {
+            for (Worker worker : workers) {
+                if (worker.setupError != null) {
+                    System.err.println("Setup failed: " + worker.setupError);
+                    break;
+                }
+            }
+            System.exit(1);
+        }
+        report(workers);
+    }
+
+    private void report(Worker[] workers) {
+        Map<Operation, LatencyRecorder> latencies = new EnumMap<>(Operation.class);
+        long[] sent = new long[Operation.values().length];
+        long[] errors = new long[sent.length];
+        long[] unanswered = new long[sent.length];
+        LatencyRecorder all = new LatencyRecorder();
+        LatencyRecorder lag = new LatencyRecorder();
+        for (Worker worker : workers) {
+            for (Operation operation : mix.keySet()) {
+                int i = operation.ordinal();
+                latencies.computeIfAbsent(operation, key -> new LatencyRecorder()).add(worker.latencies[i]);
+                all.add(worker.latencies[i]);
+                sent[i] += worker.sent[i];
+                errors[i] += worker.errors[i];
+                unanswered[i] += worker.unanswered[i];
+            }
+            lag.add(worker.sendLag);
+        }
+
+        double seconds = durationNanos / 1e9;
+        System.out.println();
+        System.out.printf("%-6s %9s %9s %7s %10s %9s %9s %9s %9s %9s %9s %9s%n", "op", "sent", "ok", "errors",
+                "unanswered", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "p99.99 ms", "max ms");
+        long totalSent = 0;
+        long totalErrors = 0;
+        long totalUnanswered = 0;
+        for (Map.Entry<Operation, LatencyRecorder> entry : latencies.entrySet()) {
+            int i = entry.getKey().ordinal();
+            printRow(entry.getKey().key, sent[i], errors[i], unanswered[i], entry.getValue(), seconds);
+            totalSent += sent[i];
+            totalErrors += errors[i];
+            totalUnanswered += unanswered[i];
+        }
+        printRow("all", totalSent, totalErrors, totalUnanswered, all, seconds);
+        System.out.printf("%nLatency is measured from each request's intended send time. Send lag behind schedule:"
+                + " p99 %.3f ms, max %.3f ms%n", lag.getValueAtPercentile(99) / NANOS_PER_MILLI,
+                lag.getMaxNanos() / NANOS_PER_MILLI);
+        if (distribution) {
+            System.out.println();
+            all.printDistribution(System.out, 5);
+        }
+    }
+
+    private static void printRow(String name, long sent, long errors, long unanswered, LatencyRecorder latency, double seconds) {
+        long ok = sent - errors - unanswered;
+        System.out.printf("%-6s %9d %9d %7d %10d %9.1f %9.3f %9.3f %9.3f %9.3f %9.3f %9.3f%n", name, sent, ok, errors,
+                unanswered, ok / seconds,
+                latency.getValueAtPercentile(50) / NANOS_PER_MILLI, latency.getValueAtPercentile(90) / NANOS_PER_MILLI,
+                latency.getValueAtPercentile(99) / NANOS_PER_MILLI, latency.getValueAtPercentile(99.9) / NANOS_PER_MILLI,
+                latency.getValueAtPercentile(99.99) / NANOS_PER_MILLI, latency.getMaxNanos() / NANOS_PER_MILLI);
+    }
+
+    private static byte[] frame(String message) {
+        byte[] payload = message.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(4 + payload.length).putInt(payload.length).put(payload).array();
+    }
+
+    /**
+     * One selector thread with its share of the connections and of the request rate. Its schedule is offset by a
+     * fraction of the period so the threads interleave instead of firing together.
+     */
+    private class Worker implements Runnable {
+
+        private final int index;
+        private final int connectionCount;
+        private final CyclicBarrier started;
+        private final SplittableRandom random;
+        private final Operation[] operations;
+        private final int[] cumulativeWeights;
+        private final Map<Kind, List<Connection>> byKind = new EnumMap<>(Kind.class);
+        private final int[] nextConnection = new int[Kind.values().length];
+        private final LatencyRecorder[] latencies = new LatencyRecorder[Operation.values().length];
+        private final LatencyRecorder sendLag = new LatencyRecorder();
+        private final long[] sent = new long[Operation.values().length];
+        private final long[] errors = new long[Operation.values().length];
+        private final long[] unanswered = new long[Operation.values().length];
+        private Selector selector;
+        private long outstanding;
+        private long recordFrom;
+        private Exception setupError;
+
+        Worker(int index, int connectionCount, CyclicBarrier started) {
+            this.index = index;
+            this.connectionCount = connectionCount;
+            this.started = started;
+            this.random = new SplittableRandom(index);
+            operations = mix.keySet().toArray(new Operation[0]);
+            cumulativeWeights = new int[operations.length];
+            int total = 0;
+            for (int i = 0; i < operations.length; i++) {
+                total += mix.get(operations[i]);
+                cumulativeWeights[i] = total;
+            }
+            for (int i = 0; i < latencies.length; i++) {
+                latencies[i] = new LatencyRecorder();
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                selector = Selector.open();
+                openConnections();
+            } catch (IOException | RuntimeException e) {
+                // Still arrive at the barrier so the other threads are released and the run aborts.
+                setupError = e;
+                aborted = true;
+            }
+            try {
+                started.await();
+            } catch (InterruptedException | BrokenBarrierException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            try {
+                if (!aborted) {
+                    generate();
+                }
+            } catch (IOException e) {
+                System.err.println("Load thread " + index + " failed: " + e.getMessage());
+            } finally {
+                closeAll();
+            }
+        }
+
+        /**
+         * Shares this thread's connections between the kinds in proportion to the weight of the operations each
+         * carries, with at least one per kind in use, and binds the framed ones to a server before load starts.
+         */
+        private void openConnections() throws IOException {
+            Map<Kind, Integer> weights = new EnumMap<>(Kind.class);
+            int totalWeight = 0;
+            for (Map.Entry<Operation, Integer> entry : mix.entrySet()) {
+                weights.merge(entry.getKey().kind, entry.getValue(), Integer::sum);
+                totalWeight += entry.getValue();
+            }
+            int remaining = connectionCount;
+            int kindsLeft = weights.size();
+            for (Map.Entry<Kind, Integer> entry : weights.entrySet()) {
+                kindsLeft--;
+                int count = kindsLeft == 0 ? remaining
+                        : Math.max(1, Math.min(remaining - kindsLeft, connectionCount * entry.getValue() / totalWeight));
+                remaining -= count;
+                List<Connection> group = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    group.add(new Connection(entry.getKey(), open(entry.getKey())));
+                }
+                byKind.put(entry.getKey(), group);
+            }
+        }
+
+        private SocketChannel open(Kind kind) throws IOException {
+            SocketChannel channel = SocketChannel.open(address);
+            try {
+                channel.socket().setTcpNoDelay(true);
+                if (kind != Kind.HTTP) {
+                    String protocol = kind == Kind.FRAMED_TCP ? "tcp" : "udp";
+                    ByteBuffer request = ByteBuffer.wrap(frame("case : 2 - " + protocol));
+                    while (request.hasRemaining()) {
+                        channel.write(request);
+                    }
+                    String response = readFrame(channel);
+                    if (!response.startsWith("connect - ")) {
+                        throw new IOException("No " + protocol + " server: " + response);
+                    }
+                }
+                channel.configureBlocking(false);
+                channel.register(selector, SelectionKey.OP_READ);
+                return channel;
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        private void generate() throws IOException {
+            double threadRate = (double) rate / threads;
+            long offset = (long) (index * NANOS_PER_SECOND / threadRate / threads);
+            long start = startNanos + offset;
+            long end = startNanos + warmupNanos + durationNanos;
+            recordFrom = startNanos + warmupNanos;
+            long sequence = 0;
+            long drainDeadline = Long.MAX_VALUE;
+            while (true) {
+                long now = System.nanoTime();
+                long due = start + (long) (sequence * NANOS_PER_SECOND / threadRate);
+                while (due <= now && due < end) {
+                    send(pick(), due, now);
+                    due = start + (long) (++sequence * NANOS_PER_SECOND / threadRate);
+                }
+                if (due >= end && drainDeadline == Long.MAX_VALUE) {
+                    drainDeadline = end + drainNanos;
+                }
+                if (drainDeadline != Long.MAX_VALUE && (outstanding == 0 || now >= drainDeadline)) {
+                    return;
+                }
+                long waitNanos = Math.min(due < end ? due : drainDeadline, drainDeadline) - now;
+                // Responses wake the selector at once; only the next send may be up to a millisecond late, which
+                // counts against its latency and shows up in the send lag.
+                if (waitNanos <= 0) {
+                    selector.selectNow();
+                } else {
+                    selector.select(Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos)));
+                }
+                for (SelectionKey key : selector.selectedKeys()) {
+                    Connection connection = (Connection) key.attachment();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isWritable()) {
+                        connection.flush();
+                    }
+                    if (key.isValid() && key.isReadable()) {
+                        connection.read(System.nanoTime());
+                    }
+                }
+                selector.selectedKeys().clear();
+            }
+        }
+
+        private Operation pick() {
+            int roll = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+            for (int i = 0; i < operations.length; i++) {
+                if (roll < cumulativeWeights[i]) {
+                    return operations[i];
+                }
+            }
+            return operations[operations.length - 1];
+        }
+
+        private void send(Operation operation, long intended, long now) throws IOException {
+            boolean recording = intended >= recordFrom;
+            if (recording) {
+                sent[operation.ordinal()]++;
+                sendLag.record(now - intended);
+            }
+            List<Connection> group = byKind.get(operation.kind);
+            if (group.isEmpty()) {
+                if (recording) {
+                    errors[operation.ordinal()]++;
+                }
+                return;
+            }
+            int next = nextConnection[operation.kind.ordinal()]++ % group.size();
+            group.get(next).send(operation, intended);
+        }
+
+        private void complete(Operation operation, long intended, long now, boolean failed) {
+            outstanding--;
+            if (intended < recordFrom) {
+                return;
+            }
+            if (failed) {
+                errors[operation.ordinal()]++;
+            } else {
+                latencies[operation.ordinal()].record(now - intended);
+            }
+        }
+
+        private void closeAll() {
+            for (List<Connection> group : byKind.values()) {
+                for (Connection connection : new ArrayList<>(group)) {
+                    connection.close(true);
+                }
+            }
+            try {
+                if (selector != null) {
+                    selector.close();
+                }
+            } catch (IOException ignored) {
+                // Nothing left to release.
+            }
+        }
+
+        /**
+         * A pipelined connection. Requests are appended to one output buffer and their intended send times and
+         * operations queued in a ring, popped as in-order responses are parsed out of the input buffer.
+         */
+        private class Connection {
+
+            private final Kind kind;
+            private final SocketChannel channel;
+            private final SelectionKey key;
+            private ByteBuffer out = ByteBuffer.allocate(4096);
+            private ByteBuffer in = ByteBuffer.allocate(READ_BUFFER_SIZE);
+            private long[] intendedTimes = new long[64];
+            private Operation[] pending = new Operation[64];
+            private int head;
+            private int size;
+
+            Connection(Kind kind, SocketChannel channel) {
+                this.kind = kind;
+                this.channel = channel;
+                this.key = channel.keyFor(selector);
+                key.attach(this);
+            }
+
+            void send(Operation operation, long intended) throws IOException {
+                byte[] request = requests.get(operation);
+                if (out.remaining() < request.length) {
+                    out = grow(out, request.length);
+                }
+                out.put(request);
+                if (size == intendedTimes.length) {
+                    growQueue();
+                }
+                int tail = (head + size) & (intendedTimes.length - 1);
+                intendedTimes[tail] = intended;
+                pending[tail] = operation;
+                size++;
+                outstanding++;
+                flush();
+            }
+
+            void flush() throws IOException {
+                out.flip();
+                try {
+                    channel.write(out);
+                } catch (IOException e) {
+                    out.compact();
+                    close(false);
+                    return;
+                }
+                boolean blocked = out.hasRemaining();
+                out.compact();
+                key.interestOps(blocked ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+            }
+
+            void read(long now) {
+                int read;
+                try {
+                    read = channel.read(in);
+                } catch (IOException e) {
+                    read = -1;
+                }
+                if (read == -1) {
+                    close(false);
+                    return;
+                }
+                int consumed = kind == Kind.HTTP ? parseHttp(now) : parseFrames(now);
+                in.flip().position(consumed);
+                in.compact();
+                if (!in.hasRemaining()) {
+                    in = grow(in, in.capacity());
+                }
+            }
+
+            private int parseFrames(long now) {
+                byte[] data = in.array();
+                int limit = in.position();
+                int position = 0;
+                while (limit - position >= 4) {
+                    int length = ByteBuffer.wrap(data, position, 4).getInt();
+                    if (limit - position - 4 < length) {
+                        break;
+                    }
+                    boolean failed = startsWith(data, position + 4, length, LEGACY_ERROR)
+                            || startsWith(data, position + 4, length, NO_SERVER);
+                    position += 4 + length;
+                    pop(now, failed);
+                }
+                return position;
+            }
+
+            private int parseHttp(long now) {
+                byte[] data = in.array();
+                int limit = in.position();
+                int position = 0;
+                while (true) {
+                    int headerEnd = indexOf(data, position, limit, HEADER_END);
+                    if (headerEnd < 0) {
+                        return position;
+                    }
+                    int total = headerEnd + HEADER_END.length - position + contentLength(data, position, headerEnd);
+                    if (limit - position < total) {
+                        return position;
+                    }
+                    int status = (data[position + 9] - '0') * 100 + (data[position + 10] - '0') * 10 + (data[position + 11] - '0');
+                    position += total;
+                    pop(now, status >= 400);
+                }
+            }
+
+            private void pop(long now, boolean failed) {
+                if (size == 0) {
+                    return;
+                }
+                long intended = intendedTimes[head];
+                Operation operation = pending[head];
+                pending[head] = null;
+                head = (head + 1) & (intendedTimes.length - 1);
+                size--;
+                complete(operation, intended, now, failed);
+            }
+
+            /**
+             * Drops the connection. Requests still waiting on it count as unanswered when the run ends, or as
+             * errors when the load balancer closed it.
+             */
+            void close(boolean shutdown) {
+                byKind.get(kind).remove(this);
+                while (size > 0) {
+                    Operation operation = pending[head];
+                    if (intendedTimes[head] >= recordFrom) {
+                        (shutdown ? unanswered : errors)[operation.ordinal()]++;
+                    }
+                    head = (head + 1) & (intendedTimes.length - 1);
+                    size--;
+                    outstanding--;
+                }
+                key.cancel();
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                    // Already gone.
+                }
+            }
+
+            private void growQueue() {
+                long[] times = new long[intendedTimes.length * 2];
+                Operation[] operations = new Operation[times.length];
+                for (int i = 0; i < size; i++) {
+                    int from = (head + i) & (intendedTimes.length - 1);
+                    times[i] = intendedTimes[from];
+                    operations[i] = pending[from];
+                }
+                intendedTimes = times;
+                pending = operations;
+                head = 0;
+            }
+        }
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer, int extra) {
+        ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + extra));
+        return grown.put(buffer.flip());
+    }
+
+    private static boolean startsWith(byte[] data, int offset, int length, byte[] prefix) {
+        return length >= prefix.length && Arrays.equals(data, offset, offset + prefix.length, prefix, 0, prefix.length);
+    }
+
+    private static int indexOf(byte[] data, int from, int limit, byte[] target) {
+        for (int i = from; i <= limit - target.length; i++) {
+            if (Arrays.equals(data, i, i + target.length, target, 0, target.length)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int contentLength(byte[] data, int from, int headerEnd) {
+        for (int line = indexOf(data, from, headerEnd, CRLF); line >= 0 && line < headerEnd;
+             line = indexOf(data, line + CRLF.length, headerEnd, CRLF)) {
+            int name = line + CRLF.length;
+            if (headerEnd - name > CONTENT_LENGTH.length && matchesIgnoreCase(data, name, CONTENT_LENGTH)) {
+                int length = 0;
+                for (int i = name + CONTENT_LENGTH.length; i < headerEnd && data[i] != '\r'; i++) {
+                    if (data[i] >= '0' && data[i] <= '9') {
+                        length = length * 10 + data[i] - '0';
+                    }
+                }
+                return length;
+            }
+        }
+        return 0;
+    }
+
+
+    private static boolean matchesIgnoreCase(byte[] data, int offset, byte[] lowerCase) {
+        for (int i = 0; i < lowerCase.length; i++) {
+            int c = data[offset + i];
+            if ((c >= 'A' && c <= 'Z' ? c + 32 : c) != lowerCase[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String readFrame(SocketChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(4);
+        readFully(channel, header);
+        ByteBuffer payload = ByteBuffer.allocate(header.flip().getInt());
+        readFully(channel, payload);
+        return new String(payload.array(), StandardCharsets.UTF_8);
+    }
+
+    private static void readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) == -1) {
+                throw new IOException("Connection closed by LoadBalancer");
+            }
+        }
+    }
+}
@@ -2,6 +2,8 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Scanner;
 
 public class Main {
@@ -10,6 +12,8 @@ public class Main {
     private static SocketChannel clientChannel = null;
     private static boolean running = true;
     private static boolean isServerConnect = false;
+    private static boolean binaryProtocol = false;
+    private static long nextRequestId = 1;
 
     private static void printMenu() {
         System.out.println("=== Command Menu ===");
@@ -27,12 +31,14 @@ public class Main {
             mainChannel = SocketChannel.open();
             mainChannel.configureBlocking(true);
             mainChannel.connect(new InetSocketAddress("localhost", 8080));
-            ByteBuffer responseBuffer = ByteBuffer.wrap("case : 1".getBytes());
-            mainChannel.write(responseBuffer);
-            ByteBuffer buffer = ByteBuffer.allocate(1024);
-            int bytesRead = mainChannel.read(buffer);
-            buffer.flip();
-            String response = new String(buffer.array(), 0, bytesRead);
+            String response;
+            if (binaryProtocol) {
+                BinaryFrame.write(mainChannel, BinaryFrame.OP_LIST_SERVERS, nextRequestId++, new byte[0]);
+                response = formatServerList(BinaryFrame.read(mainChannel));
+            } else {
+                writeFrame(mainChannel, "case : 1");
+                response = readFrame(mainChannel);
+            }
             System.out.println("--The port for the load balancer--");
             System.out.println(response);
         } catch (IOException e) {
@@ -45,14 +51,17 @@ public class Main {
             clientChannel = SocketChannel.open();
             clientChannel.configureBlocking(true);
             clientChannel.connect(new InetSocketAddress("localhost", 8080));
-            String requestMessage = "case : 2 - " + protocol;
-            ByteBuffer responseBuffer = ByteBuffer.wrap(requestMessage.getBytes());
-            clientChannel.write(responseBuffer);
-
-            ByteBuffer buffer = ByteBuffer.allocate(1024);
-            int bytesRead = clientChannel.read(buffer);
-            buffer.flip();
-            String response = new String(buffer.array(), 0, bytesRead);
+            String response;
+            if (binaryProtocol) {
+                BinaryFrame.write(clientChannel, BinaryFrame.OP_CONNECT, nextRequestId++, new byte[]{BinaryFrame.protocolCode(protocol)});
+                BinaryFrame frame = BinaryFrame.read(clientChannel);
+                response = frame.getOpcode() == BinaryFrame.OP_RESPONSE
+                        ? "connect - " + frame.getPayload().getInt(0) : frame.getPayloadAsString();
+            } else {
+                String requestMessage = "case : 2 - " + protocol;
+                writeFrame(clientChannel, requestMessage);
+                response = readFrame(clientChannel);
+            }
             if (response.equals("No Available use Server")){
                 System.out.println(response);
             }else{
@@ -68,14 +77,15 @@ public class Main {
     private static void sendMessageToServer(String message){
 
         try {
-            String requestMessage = "case : 3 - " + message;
-            ByteBuffer responseBuffer = ByteBuffer.wrap(requestMessage.getBytes());
-            clientChannel.write(responseBuffer);
-
-            ByteBuffer buffer = ByteBuffer.allocate(1024);
-            int bytesRead = clientChannel.read(buffer);
-            buffer.flip();
-            String response = new String(buffer.array(), 0, bytesRead);
+            String response;
+            if (binaryProtocol) {
+                BinaryFrame.write(clientChannel, BinaryFrame.OP_FORWARD, nextRequestId++, message.getBytes(StandardCharsets.UTF_8));
+                response = BinaryFrame.read(clientChannel).getPayloadAsString();
+            } else {
+                String requestMessage = "case : 3 - " + message;
+                writeFrame(clientChannel, requestMessage);
+                response = readFrame(clientChannel);
+            }
             if (response.equals("Fail connect to server")){
                 isServerConnect = false;
                 System.out.println("Connecting Server is down. please new connection");
@@ -87,8 +97,56 @@ public class Main {
         }
     }
 
-    public static void main(String[] args)  {
+    private static String formatServerList(BinaryFrame frame) {
+        if (frame.getOpcode() != BinaryFrame.OP_RESPONSE) {
+            return frame.getPayloadAsString();
+        }
+        ByteBuffer payload = frame.getPayload();
+        StringBuilder output = new StringBuilder();
+        int count = payload.getShort();
+        for (int i = 0; i < count; i++) {
+            String protocol = BinaryFrame.protocolName(payload.get());
+            output.append(protocol).append(" : ").append(payload.getInt()).append("\n");
+        }
+        return output.toString();
+    }
+
+    private static void writeFrame(SocketChannel channel, String message) throws IOException {
+        byte[] payload = message.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer frame = ByteBuffer.allocate(4 + payload.length);
+        frame.putInt(payload.length).put(payload).flip();
+        while (frame.hasRemaining()) {
+            channel.write(frame);
+        }
+    }
 
+    private static String readFrame(SocketChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(4);
+        readFully(channel, header);
+        ByteBuffer payload = ByteBuffer.allocate(header.flip().getInt());
+        readFully(channel, payload);
+        return new String(payload.array(), StandardCharsets.UTF_8);
+    }
+
+    private static void readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) == -1) {
+                throw new IOException("Connection closed by LoadBalancer");
+            }
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+
+        if (args.length > 0 && args[0].equals("load")) {
+            LoadGenerator.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        for (String arg : args) {
+            if (arg.equals("--binary")) {
+                binaryProtocol = true;
+            }
+        }
         Scanner scanner = new Scanner(System.in);
         printMenu();
         while (running) {
@@ -0,0 +1,78 @@
+package balancer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import server.TCPServer;
+import util.MessageUtil;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Control-plane paths over a registry of {@code backends} servers: listing them for "case : 1" and the health check
+ * (getAllPortState), and a register/unregister pair through ServerControl.handleJsonMessage, from parsing the
+ * command and building the backend with its pools to publishing the new snapshot.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegistryBenchmark {
+
+    @Param({"2", "16", "128"})
+    private int backends;
+
+    private ServerRegistry registry;
+    private ServerControl control;
+    private String registerCommand;
+    private String unregisterCommand;
+    private PrintStream stdout;
+
+    @Setup
+    public void setUp() {
+        registry = new ServerRegistry();
+        for (int i = 0; i < backends; i++) {
+            registry.register(new Backend(TCPServer.TCPServerManager.createServerInstance(20000 + i), null));
+        }
+        control = new ServerControl(registry, new BackendRouter(new OutlierDetector(registry)), removed -> { }, () -> { });
+        TCPServer server = TCPServer.TCPServerManager.createServerInstance(30000);
+        registerCommand = MessageUtil.getServerRegisterMessage("tcp", server.getPort(), server.getBackgroundPort(), 3, 100);
+        unregisterCommand = MessageUtil.getServerUnRegisterMessage("tcp", server.getPort(), server.getBackgroundPort());
+        // Registration prints the new server list; render it, but keep it out of the benchmark output.
+        stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(stdout);
+    }
+
+    @Benchmark
+    public String clientPortState() {
+        return registry.getAllPortState("client");
+    }
+
+    @Benchmark
+    public String serverPortState() {
+        return registry.getAllPortState("server");
+    }
+
+    @Benchmark
+    public String registerAndUnregister() {
+        control.handleJsonMessage(registerCommand);
+        return control.handleJsonMessage(unregisterCommand);
+    }
+}
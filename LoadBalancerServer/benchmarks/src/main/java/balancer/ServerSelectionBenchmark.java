@@ -0,0 +1,74 @@
+package balancer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import server.TCPServer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The worker loop's session routing through BackendRouter.route: a sticky session lookup, and a new session that
+ * runs the protocol's strategy over the outlier-filtered registry snapshot and records the session.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServerSelectionBenchmark {
+
+    @Param({"2", "16", "128"})
+    private int backends;
+
+    @Param({"round-robin", "weighted-round-robin", "p2c", "maglev"})
+    private String strategy;
+
+    private BackendRouter router;
+    private SessionTable sessions;
+    private ClientConnection stickyClient;
+    private ClientConnection newClient;
+    private String[] routingKeys;
+    private int nextKey;
+
+    @Setup
+    public void setUp() {
+        ServerRegistry registry = new ServerRegistry();
+        for (int i = 0; i < backends; i++) {
+            Backend backend = new Backend(TCPServer.TCPServerManager.createServerInstance(20000 + i), null);
+            backend.setWeight(1 + i % 3);
+            registry.register(backend);
+        }
+        System.setProperty("lb.strategy.tcp", strategy);
+        router = new BackendRouter(new OutlierDetector(registry));
+        sessions = new SessionTable(100000);
+        routingKeys = new String[1024];
+        for (int i = 0; i < routingKeys.length; i++) {
+            routingKeys[i] = "10.0." + (i / 256) + "." + (i % 256);
+        }
+        stickyClient = new ClientConnection(null);
+        newClient = new ClientConnection(null);
+        router.route(sessions, stickyClient, "tcp", routingKeys[0], ClientConnection::close);
+    }
+
+    @Benchmark
+    public Backend stickySession() {
+        return router.route(sessions, stickyClient, "tcp", null, ClientConnection::close);
+    }
+
+    @Benchmark
+    public Backend newSession() {
+        String routingKey = routingKeys[nextKey++ & (routingKeys.length - 1)];
+        Backend selected = router.route(sessions, newClient, "tcp", routingKey, ClientConnection::close);
+        sessions.remove(newClient);
+        return selected;
+    }
+}
@@ -0,0 +1,58 @@
+package server;
+
+import com.google.gson.JsonObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Server.handleJsonRequest on client traffic, which is every forwarded request a backend answers: the lenient parse
+ * fails and the echo response is built. The health check and acknowledgement branches log on every call, so they are
+ * left out rather than measuring the log queue.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServerJsonRequestBenchmark {
+
+    @Param({"16", "1024", "16384"})
+    private int payloadBytes;
+
+    @Param({"tcp", "http"})
+    private String protocol;
+
+    private Server server;
+    private String textPayload;
+    private String multiWordPayload;
+
+    @Setup
+    public void setUp() {
+        server = protocol.equals("tcp")
+                ? TCPServer.TCPServerManager.createServerInstance(80)
+                : APIServer.APIServerManager.createServerInstance(8081);
+        textPayload = "x".repeat(payloadBytes);
+        multiWordPayload = "GET /" + "y".repeat(Math.max(0, payloadBytes - 5));
+    }
+
+    @Benchmark
+    public JsonObject textPayload() {
+        return server.handleJsonRequest(textPayload);
+    }
+
+    @Benchmark
+    public JsonObject multiWordPayload() {
+        return server.handleJsonRequest(multiWordPayload);
+    }
+}
@@ -0,0 +1,85 @@
+package util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MessageUtil's message builders and parsers, and isServerRequest, which every legacy frame and every datagram on
+ * port 8080 goes through. Client payloads of {@code payloadBytes} either start like JSON, and so are parsed in full,
+ * or take the first-character fast path.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageUtilBenchmark {
+
+    @Param({"16", "1024", "16384"})
+    private int payloadBytes;
+
+    private String payload;
+    private String jsonPayload;
+    private String registerMessage;
+    private String healthCheckReply;
+    private long seq;
+
+    @Setup
+    public void setUp() {
+        payload = "x".repeat(payloadBytes);
+        jsonPayload = "{\"data\":\"" + "x".repeat(Math.max(0, payloadBytes - 11)) + "\"}";
+        registerMessage = MessageUtil.getServerRegisterMessage("tcp", 80, 12345, 3, 100);
+        healthCheckReply = MessageUtil.getHealthCheckAwkMessage(42);
+    }
+
+    @Benchmark
+    public String serverRegisterMessage() {
+        return MessageUtil.getServerRegisterMessage("tcp", 80, 12345, 3, 100);
+    }
+
+    @Benchmark
+    public String healthCheckMessage() {
+        return MessageUtil.getHealthCheckMessage(seq++);
+    }
+
+    @Benchmark
+    public long healthCheckSeq() {
+        return MessageUtil.getHealthCheckSeq(healthCheckReply);
+    }
+
+    @Benchmark
+    public String tcpServerData() {
+        return MessageUtil.getTCPServerData(80, payload);
+    }
+
+    @Benchmark
+    public String apiServerData() {
+        return MessageUtil.getAPIServerData(8081, payload);
+    }
+
+    @Benchmark
+    public boolean isServerRequestControl() {
+        return MessageUtil.isServerRequest(registerMessage);
+    }
+
+    @Benchmark
+    public boolean isServerRequestPlainPayload() {
+        return MessageUtil.isServerRequest(payload);
+    }
+
+    @Benchmark
+    public boolean isServerRequestJsonPayload() {
+        return MessageUtil.isServerRequest(jsonPayload);
+    }
+}
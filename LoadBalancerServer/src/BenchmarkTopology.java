@@ -0,0 +1,58 @@
+import server.Server;
+import util.ConfigUtil;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * One benchmark round's topology: a load balancer on port 8080 in this JVM with backends registered to it.
+ * The balancer reads its configuration when constructed, so set any lb.* properties before {@link #start}.
+ */
+public class BenchmarkTopology<S extends Server> {
+
+    private static final long STARTUP_MS = ConfigUtil.getLong("bench.startupMs", 500);
+
+    private final Thread loadBalancerThread;
+    private final List<S> backends;
+
+    private BenchmarkTopology(Thread loadBalancerThread, List<S> backends) {
+        this.loadBalancerThread = loadBalancerThread;
+        this.backends = backends;
+    }
+
+    /**
+     * Starts the balancer, then {@code backendCount} backends from {@code backendFactory}, each registered and
+     * serving on a daemon thread, waiting for each side to come up.
+     */
+    public static <S extends Server> BenchmarkTopology<S> start(int backendCount, Supplier<S> backendFactory) throws InterruptedException {
+        Thread loadBalancerThread = new Thread(LoadBalancer::new, "benchmark-lb");
+        loadBalancerThread.start();
+        Thread.sleep(STARTUP_MS);
+
+        List<S> backends = new ArrayList<>();
+        for (int i = 0; i < backendCount; i++) {
+            S backend = backendFactory.get();
+            backend.registerLoadBalancer();
+            Thread backendThread = new Thread(backend::start);
+            backendThread.setDaemon(true);
+            backendThread.start();
+            backends.add(backend);
+        }
+        Thread.sleep(STARTUP_MS);
+        return new BenchmarkTopology<>(loadBalancerThread, backends);
+    }
+
+    public List<S> getBackends() {
+        return backends;
+    }
+
+    /**
+     * Unregisters every backend, which shuts the balancer down once the last one is gone, and waits for it to exit.
+     */
+    public void stop() throws InterruptedException {
+        for (S backend : backends) {
+            backend.unregisterLoadBalancer();
+        }
+        loadBalancerThread.join();
+    }
+}
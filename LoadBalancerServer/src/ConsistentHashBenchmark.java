@@ -0,0 +1,107 @@
+import balancer.MaglevTable;
+import util.ConfigUtil;
+import java.util.Arrays;
+
+/**
+ * Measures how many routing keys move when one backend leaves or joins, and the cost of a lookup,
+ * for the Maglev table against plain modulo hashing.
+ */
+public class ConsistentHashBenchmark {
+
+    private static final int KEYS = ConfigUtil.getInt("bench.keys", 200000);
+    private static final int LOOKUPS = ConfigUtil.getInt("bench.lookups", 20000000);
+    private static final int TABLE_SIZE = ConfigUtil.getInt("lb.maglev.tableSize", 65537);
+    private static final long KEY_SEED = 0x5851F42D4C957F2DL;
+
+    public static void main(String[] args) {
+        long[] keyHashes = new long[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keyHashes[i] = MaglevTable.hash("10.0." + (i >> 8) + "." + (i & 0xFF) + "#" + i, KEY_SEED);
+        }
+        System.out.println("Consistent hash benchmark : " + KEYS + " keys, " + LOOKUPS + " lookups");
+        System.out.println("backends\ttable\tbuild(ms)\tremove moved%\tadd moved%\tideal%\tmodulo remove%\tlookup(ns)\thash+lookup(ns)");
+        for (int backends : new int[]{10, 100, 1000}) {
+            runRound(backends, keyHashes);
+        }
+    }
+
+    private static void runRound(int backends, long[] keyHashes) {
+        String[] names = names(backends);
+        long buildStart = System.nanoTime();
+        MaglevTable table = new MaglevTable(names, TABLE_SIZE);
+        double buildMs = (System.nanoTime() - buildStart) / 1e6;
+
+        String[] removed = Arrays.copyOf(names, backends - 1);
+        String[] added = Arrays.copyOf(names, backends + 1);
+        added[backends] = "tcp:" + backends;
+
+        double removeMoved = movedPercent(table, names, new MaglevTable(removed, TABLE_SIZE), removed, keyHashes);
+        double addMoved = movedPercent(table, names, new MaglevTable(added, TABLE_SIZE), added, keyHashes);
+        double moduloMoved = moduloMovedPercent(backends, keyHashes);
+
+        System.out.printf("%d\t\t%d\t%.1f\t\t%.2f\t\t%.2f\t\t%.2f\t%.2f\t\t%.1f\t\t%.1f%n", backends, table.getSize(), buildMs,
+                removeMoved, addMoved, 100.0 / backends, moduloMoved, lookupNanos(table, keyHashes), hashAndLookupNanos(table));
+    }
+
+    private static String[] names(int backends) {
+        String[] names = new String[backends];
+        for (int i = 0; i < backends; i++) {
+            names[i] = "tcp:" + i;
+        }
+        return names;
+    }
+
+    private static double movedPercent(MaglevTable before, String[] beforeNames, MaglevTable after, String[] afterNames, long[] keyHashes) {
+        int moved = 0;
+        for (long keyHash : keyHashes) {
+            if (!beforeNames[before.lookup(keyHash)].equals(afterNames[after.lookup(keyHash)])) {
+                moved++;
+            }
+        }
+        return moved * 100.0 / keyHashes.length;
+    }
+
+    private static double moduloMovedPercent(int backends, long[] keyHashes) {
+        int moved = 0;
+        for (long keyHash : keyHashes) {
+            if (Long.remainderUnsigned(keyHash, backends) != Long.remainderUnsigned(keyHash, backends - 1)) {
+                moved++;
+            }
+        }
+        return moved * 100.0 / keyHashes.length;
+    }
+
+    private static double lookupNanos(MaglevTable table, long[] keyHashes) {
+        long sink = 0;
+        for (int i = 0; i < LOOKUPS / 10; i++) {
+            sink += table.lookup(keyHashes[i % keyHashes.length]);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            sink += table.lookup(keyHashes[i % keyHashes.length]);
+        }
+        long elapsed = System.nanoTime() - start;
+        if (sink == 42) {
+            System.out.print("");
+        }
+        return (double) elapsed / LOOKUPS;
+    }
+
+    private static double hashAndLookupNanos(MaglevTable table) {
+        String[] clientAddresses = new String[1024];
+        for (int i = 0; i < clientAddresses.length; i++) {
+            clientAddresses[i] = "192.168." + (i >> 8) + "." + (i & 0xFF);
+        }
+        int lookups = LOOKUPS / 10;
+        long sink = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            sink += table.lookup(MaglevTable.hash(clientAddresses[i & 1023], KEY_SEED));
+        }
+        long elapsed = System.nanoTime() - start;
+        if (sink == 42) {
+            System.out.print("");
+        }
+        return (double) elapsed / lookups;
+    }
+}
@@ -0,0 +1,141 @@
+import server.TCPServer;
+import util.ConfigUtil;
+import util.FrameUtil;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Runs the same keep-alive request loop against the selector engine and the virtual-thread engine (lb.engine),
+ * then parks idle connections on each and reports the heap they hold, scaled to 10k connections.
+ * The heap figure includes the benchmark's own client sockets, which cost the same under both engines.
+ */
+public class EngineBenchmark {
+
+    private static final int CLIENT_THREADS = ConfigUtil.getInt("bench.clients", 64);
+    private static final int BACKENDS = ConfigUtil.getInt("bench.backends", 4);
+    private static final long DURATION_MS = ConfigUtil.getLong("bench.durationMs", 5000);
+    private static final int IDLE_CONNECTIONS = ConfigUtil.getInt("bench.idleConnections", 5000);
+
+    private static int nextClientPort = 21000;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("Engine benchmark : " + CLIENT_THREADS + " clients, " + BACKENDS + " tcp backends, " + DURATION_MS + "ms per run, "
+                + IDLE_CONNECTIONS + " idle connections");
+        System.out.println("engine\trequests/sec\tp50 us\tp99 us\theap MB per 10k idle connections");
+        for (String engine : new String[] {"nio", "virtual"}) {
+            runRound(engine);
+        }
+        System.exit(0);
+    }
+
+    private static void runRound(String engine) throws Exception {
+        System.setProperty("lb.engine", engine);
+        BenchmarkTopology<TCPServer> topology = BenchmarkTopology.start(BACKENDS,
+                () -> TCPServer.TCPServerManager.createServerInstance(nextClientPort++));
+
+        long[] latencies = measureRequests();
+        double requestsPerSecond = latencies.length * 1000.0 / DURATION_MS;
+        double idleMegabytes = measureIdleHeap() * 10000.0 / IDLE_CONNECTIONS / (1024 * 1024);
+        System.out.printf("%s\t%.0f\t%.0f\t%.0f\t%.1f%n", engine, requestsPerSecond,
+                percentile(latencies, 0.50) / 1000.0, percentile(latencies, 0.99) / 1000.0, idleMegabytes);
+
+        topology.stop();
+    }
+
+    /**
+     * Runs the request loop on every client thread and returns each request's latency in nanoseconds, sorted.
+     */
+    private static long[] measureRequests() throws InterruptedException {
+        long[][] samples = new long[CLIENT_THREADS][];
+        int[] counts = new int[CLIENT_THREADS];
+        CountDownLatch finished = new CountDownLatch(CLIENT_THREADS);
+        long deadline = System.currentTimeMillis() + DURATION_MS;
+        for (int i = 0; i < CLIENT_THREADS; i++) {
+            int client = i;
+            Thread clientThread = new Thread(() -> {
+                long[] own = new long[4096];
+                int count = 0;
+                try (SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", 8080))) {
+                    exchange(channel, "case : 2 - tcp");
+                    while (System.currentTimeMillis() < deadline) {
+                        long start = System.nanoTime();
+                        exchange(channel, "case : 3 - benchmark payload");
+                        if (count == own.length) {
+                            own = Arrays.copyOf(own, count * 2);
+                        }
+                        own[count++] = System.nanoTime() - start;
+                    }
+                } catch (IOException e) {
+                    System.out.println("Client failed : " + e.getMessage());
+                } finally {
+                    samples[client] = own;
+                    counts[client] = count;
+                    finished.countDown();
+                }
+            });
+            clientThread.start();
+        }
+        finished.await();
+        int total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        long[] latencies = new long[total];
+        int offset = 0;
+        for (int i = 0; i < CLIENT_THREADS; i++) {
+            System.arraycopy(samples[i], 0, latencies, offset, counts[i]);
+            offset += counts[i];
+        }
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    /**
+     * Opens the idle connections, each after one round trip so the engine has fully set it up, and returns
+     * the growth of the live heap while they are held.
+     */
+    private static long measureIdleHeap() throws IOException, InterruptedException {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long before = liveHeap(memory);
+        List<SocketChannel> idle = new ArrayList<>(IDLE_CONNECTIONS);
+        try {
+            for (int i = 0; i < IDLE_CONNECTIONS; i++) {
+                SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", 8080));
+                idle.add(channel);
+                exchange(channel, "case : 2 - tcp");
+            }
+            return liveHeap(memory) - before;
+        } finally {
+            for (SocketChannel channel : idle) {
+                channel.close();
+            }
+        }
+    }
+
+    private static long liveHeap(MemoryMXBean memory) throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(200);
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private static long percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * fraction))];
+    }
+
+    private static void exchange(SocketChannel channel, String message) throws IOException {
+        FrameUtil.writeFrame(channel, message);
+        FrameUtil.readFrame(channel);
+    }
+}
@@ -0,0 +1,84 @@
+import util.ConfigUtil;
+import util.HttpParser;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Parses a canned corpus of HTTP/1.1 requests and responses, whole and fed in small segments as they would arrive
+ * from a slow socket, and reports throughput and bytes allocated per message.
+ */
+public class HttpParserBenchmark {
+
+    private static final int ITERATIONS = ConfigUtil.getInt("bench.iterations", 200000);
+    private static final int SEGMENT_BYTES = ConfigUtil.getInt("bench.segmentBytes", 64);
+
+    private static final String[] CORPUS = {
+            "GET / HTTP/1.1\r\nHost: localhost\r\n\r\n",
+            "GET /api/v1/servers?protocol=http&limit=20 HTTP/1.1\r\n" +
+                    "Host: lb.example.com\r\n" +
+                    "User-Agent: Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0 Safari/537.36\r\n" +
+                    "Accept: text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8\r\n" +
+                    "Accept-Language: en-US,en;q=0.5\r\n" +
+                    "Accept-Encoding: gzip, deflate, br\r\n" +
+                    "Cookie: session=6f1e2d3c4b5a69788796a5b4c3d2e1f0; theme=dark\r\n" +
+                    "Connection: keep-alive\r\n\r\n",
+            "POST /api/v1/register HTTP/1.1\r\nHost: localhost\r\nContent-Type: application/json\r\nContent-Length: 59\r\n\r\n" +
+                    "{\"protocol\":\"http\",\"port\":8081,\"bp\":10001,\"weight\":3,\"x\":1}",
+            "POST /upload HTTP/1.1\r\nHost: localhost\r\nTransfer-Encoding: chunked\r\n\r\n" +
+                    "10\r\n0123456789abcdef\r\n8;ext=1\r\n01234567\r\n0\r\nX-Checksum: 42\r\n\r\n",
+            "HTTP/1.1 200 OK\r\nContent-Type: application/json\r\nContent-Length: 46\r\nConnection: keep-alive\r\n\r\n" +
+                    "{\"protocol\":\"http\",\"port\":8081,\"message\":\"ok\"}",
+            "HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n1a\r\nabcdefghijklmnopqrstuvwxyz\r\n0\r\n\r\n",
+    };
+
+    public static void main(String[] args) throws IOException {
+        ByteBuffer[] messages = new ByteBuffer[CORPUS.length];
+        long corpusBytes = 0;
+        for (int i = 0; i < CORPUS.length; i++) {
+            byte[] bytes = CORPUS[i].getBytes(StandardCharsets.ISO_8859_1);
+            messages[i] = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+            corpusBytes += bytes.length;
+        }
+        System.out.println("HTTP parser benchmark : " + CORPUS.length + " messages, " + corpusBytes + " bytes, " + ITERATIONS + " iterations");
+        System.out.println("mode\t\tmessages/sec\tMB/sec\tbytes allocated/message");
+        // The first pass of each mode only warms up the JIT.
+        for (int round = 0; round < 2; round++) {
+            run("whole", messages, corpusBytes, 1 << 20, round == 1);
+            run(SEGMENT_BYTES + "-byte", messages, corpusBytes, SEGMENT_BYTES, round == 1);
+        }
+    }
+
+    private static void run(String mode, ByteBuffer[] messages, long corpusBytes, int segmentBytes, boolean report) throws IOException {
+        HttpParser parser = new HttpParser();
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long checksum = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            for (ByteBuffer message : messages) {
+                int length = -1;
+                // Each call sees a few more bytes, like a read that returned part of the message.
+                for (int end = Math.min(segmentBytes, message.limit()); length < 0; end = Math.min(end + segmentBytes, message.limit())) {
+                    length = parser.parse(message, 0, end);
+                    if (length < 0 && end == message.limit()) {
+                        throw new IOException("Corpus message is incomplete");
+                    }
+                }
+                if (length != message.limit()) {
+                    throw new IOException("Parsed " + length + " of " + message.limit() + " bytes");
+                }
+                checksum += length + parser.getStatus() + parser.getContentLength();
+            }
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        if (!report) {
+            return;
+        }
+        long parsed = (long) ITERATIONS * messages.length;
+        System.out.printf("%-12s\t%.0f\t%.1f\t%.1f\t(checksum %d)%n", mode, parsed * 1e9 / elapsedNanos,
+                corpusBytes * ITERATIONS * 1e9 / elapsedNanos / (1024 * 1024), (double) allocated / parsed, checksum);
+    }
+}
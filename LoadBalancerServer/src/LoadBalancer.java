@@ -1,19 +1,39 @@
 
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParseException;
-import com.google.gson.JsonParser;
-import server.APIServer;
-import server.Server;
-import server.TCPServer;
-import server.UDPServer;
+import balancer.AdminServer;
+import balancer.Backend;
+import balancer.BackendExchange;
+import balancer.BackendRouter;
+import balancer.ClientConnection;
+import balancer.ClientSession;
+import balancer.ConnectionPool;
+import balancer.HealthChecker;
+import balancer.MetricsReport;
+import balancer.OutlierDetector;
+import balancer.ServerControl;
+import balancer.ServerRegistry;
+import balancer.SessionTable;
+import balancer.UdpForwarder;
+import balancer.UdpProxy;
+import util.BinaryCodec;
+import util.BufferPool;
+import util.ConfigUtil;
+import util.DrainCounter;
+import util.FrameDecoder;
+import util.FrameUtil;
+import util.HttpParser;
+import util.HttpUtil;
 import util.LoggingUtil;
 import util.MessageUtil;
+import util.TimingWheel;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.*;
 import java.nio.ByteBuffer;
 import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -21,22 +41,44 @@ import java.util.logging.Level;
 
 public class LoadBalancer {
 
-    private final Map<String, List<Server>> serverMap = new ConcurrentHashMap<>();
-    private final Map<SocketChannel, Server> sessionTable = new ConcurrentHashMap<>();
-    private final Map<String, Integer> roundRobinIndex = new ConcurrentHashMap<>();
+    private final ServerRegistry serverRegistry = new ServerRegistry();
+    private final OutlierDetector outlierDetector = new OutlierDetector(serverRegistry);
+    private final BackendRouter router = new BackendRouter(outlierDetector);
+    private final ServerControl serverControl;
     private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
+    private HealthChecker healthChecker;
+    private Set<String> rampingProtocols = Collections.emptySet();
     private volatile boolean isRunning = false;
 
     private Selector selector;
     private ServerSocketChannel tcpChannel;
     private DatagramChannel udpChannel;
+    private UdpProxy udpProxy;
+    private final ByteBuffer udpBuffer = BufferPool.acquire(65536);
+    private final int udpDrainBudget = Math.max(1, ConfigUtil.getInt("lb.udp.drainBudget", 64));
+    private final DrainCounter udpDrainCounter = new DrainCounter();
+    private static final long CONNECT_TIMEOUT_MS = ConfigUtil.getLong("lb.timeout.connectMs", 3000);
+    private static final long REQUEST_TIMEOUT_MS = ConfigUtil.getLong("lb.timeout.requestMs", 30000);
+    private static final long IDLE_TIMEOUT_MS = ConfigUtil.getLong("lb.timeout.idleMs", 300000);
+    private static final long HEALTH_PROBE_TIMEOUT_MS = ConfigUtil.getLong("lb.timeout.healthProbeMs", 2000);
+
+    private volatile WorkerLoop[] workers;
+    private int nextWorker = 0;
+    // "nio" runs client connections on the selector worker loops, "virtual" gives each one a blocking virtual thread.
+    private final boolean virtualEngine = ConfigUtil.getString("lb.engine", "nio").equals("virtual");
+    private final Set<SocketChannel> blockingClients = ConcurrentHashMap.newKeySet();
+    private AdminServer adminServer;
 
     public LoadBalancer(){
+        serverControl = new ServerControl(serverRegistry, router, this::reassignClients, this::stop);
         try {
-            startHealthCheck();
             LoggingUtil.logAsync(Level.INFO,"Load Balancer started and listening on port 8080 for both TCP and UDP");
             selector = Selector.open();
             initialize();
+            startAdminServer();
+            startWorkers();
+            // The health check hands work to the worker loops, so it only starts once they all exist.
+            startHealthCheck();
             startLoadBalancer();
         } catch (IOException e) {
             LoggingUtil.logAsync(Level.SEVERE,"Error initializing Load Balancer: " + e.getMessage());
@@ -54,26 +96,64 @@ public class LoadBalancer {
         udpChannel.bind(new InetSocketAddress(8080));
         udpChannel.configureBlocking(false);
         udpChannel.register(selector, SelectionKey.OP_READ);
+        udpProxy = new UdpProxy(selector, udpChannel, this::selectUdpBackend);
+    }
+
+    private void startAdminServer() {
+        int adminPort = ConfigUtil.getInt("lb.admin.port", 9090);
+        if (adminPort <= 0) {
+            return;
+        }
+        try {
+            adminServer = AdminServer.open(adminPort, serverRegistry);
+        } catch (IOException e) {
+            // Traffic is served without metrics rather than not at all.
+            LoggingUtil.logAsync(Level.SEVERE,"Failed to open admin listener on port " + adminPort + ": " + e.getMessage());
+            return;
+        }
+        new Thread(adminServer, "lb-admin").start();
+        LoggingUtil.logAsync(Level.INFO,"Admin listener serving /metrics on port " + adminPort);
+    }
+
+    private void startWorkers() throws IOException {
+        isRunning = true;
+        if (virtualEngine) {
+            workers = new WorkerLoop[0];
+            LoggingUtil.logAsync(Level.INFO,"Load Balancer started the virtual-thread engine");
+            return;
+        }
+        int workerCount = Math.max(1, ConfigUtil.getInt("lb.workers", Runtime.getRuntime().availableProcessors()));
+        WorkerLoop[] loops = new WorkerLoop[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            loops[i] = new WorkerLoop();
+            Thread workerThread = new Thread(loops[i], "lb-worker-" + i);
+            workerThread.start();
+        }
+        workers = loops;
+        LoggingUtil.logAsync(Level.INFO,"Load Balancer started " + workerCount + " worker loops");
     }
 
     private void startLoadBalancer() {
         try {
-            isRunning = true;
             while (isRunning) {
-                selector.select();
+                selector.select(udpProxy.getWaitMillis());
+                udpProxy.advance();
                 Iterator<SelectionKey> keyIterator = selector.selectedKeys().iterator();
                 while (keyIterator.hasNext()) {
                     SelectionKey key = keyIterator.next();
                     keyIterator.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.attachment() instanceof UdpProxy.Flow) {
+                        udpProxy.onUpstreamReadable(key);
+                        continue;
+                    }
                     if (key.isAcceptable()) {
                         handleTcpConnection();
                     }
                     if (key.isReadable()) {
-                        if (key.channel() instanceof DatagramChannel) {
-                            handleUdpRequest((DatagramChannel) key.channel());
-                        } else if (key.channel() instanceof SocketChannel) {
-                            handleTcpRequest((SocketChannel) key.channel());
-                        }
+                        handleUdpRequests((DatagramChannel) key.channel());
                     }
                 }
             }
@@ -86,113 +166,144 @@ public class LoadBalancer {
 
     private void handleTcpConnection() throws IOException {
         SocketChannel clientChannel = tcpChannel.accept();
+        if (clientChannel == null) {
+            return;
+        }
+        if (virtualEngine) {
+            Thread.ofVirtual().name("lb-client").start(new BlockingClient(clientChannel));
+            return;
+        }
         clientChannel.configureBlocking(false);
-        clientChannel.register(selector, SelectionKey.OP_READ);
+        // Skip a worker loop that has died so its share of new clients is not left unanswered.
+        for (int attempt = 0; attempt < workers.length; attempt++) {
+            WorkerLoop worker = workers[nextWorker];
+            nextWorker = (nextWorker + 1) % workers.length;
+            if (worker.running) {
+                worker.register(clientChannel);
+                return;
+            }
+        }
+        LoggingUtil.logAsync(Level.SEVERE,"No worker loop left running, refusing client connection.");
+        clientChannel.close();
     }
 
-    private synchronized void handleTcpRequest(SocketChannel clientChannel) throws IOException {
-        ByteBuffer buffer = ByteBuffer.allocate(1024);
-        int bytesRead;
+    private void handleUdpRequests(DatagramChannel udpChannel) throws IOException {
+        // Drain up to the budget per wakeup so a burst costs one select, without starving accepts and upstream replies.
+        int drained = 0;
         try {
-            bytesRead = clientChannel.read(buffer);
-        } catch (IOException e) {
-            if (e.getMessage().contains("Connection reset")) {
-                LoggingUtil.logAsync(Level.INFO,"Client connection closed successfully.");
-                clientChannel.close();
-                return;
-            } else {
-                throw e;
+            while (drained < udpDrainBudget && handleUdpRequest(udpChannel)) {
+                drained++;
             }
-        }
-        if (bytesRead == -1) {
-            clientChannel.close();
-            LoggingUtil.logAsync(Level.INFO,"Client connection closed.");
-            return;
-        }
-        buffer.flip();
-        String request = new String(buffer.array(), 0, bytesRead);
-        LoggingUtil.logAsync(Level.INFO,"Received TCP request: " + request);
-        if (isServerRequest(request)) {
-            handleServerRequest(request, clientChannel);
-        } else {
-            handleClientRequest(request,clientChannel);
+        } finally {
+            udpDrainCounter.record(drained, drained == udpDrainBudget);
         }
     }
 
-    private synchronized void handleUdpRequest(DatagramChannel udpChannel) throws IOException {
-        ByteBuffer buffer = ByteBuffer.allocate(1024);
-        SocketAddress address = udpChannel.receive(buffer);  // UDP 메시지 수신
-        buffer.flip();
-        String request = new String(buffer.array(), 0, buffer.limit());
+    private boolean handleUdpRequest(DatagramChannel udpChannel) throws IOException {
+        udpBuffer.clear();
+        SocketAddress address = udpChannel.receive(udpBuffer);  // UDP 메시지 수신
+        if (address == null) {
+            return false;
+        }
+        udpBuffer.flip();
+        if (udpBuffer.hasRemaining() && BinaryCodec.isBinary(udpBuffer.get(0))) {
+            handleBinaryControlRequest(udpBuffer, address, udpChannel);
+            return true;
+        }
+        // Control messages are JSON objects; only those are decoded, everything else is proxied as-is.
+        String request = udpBuffer.hasRemaining() && udpBuffer.get(0) == '{' ? BufferPool.toString(udpBuffer.duplicate()) : null;
+        if (request == null || !MessageUtil.isServerRequest(request)) {
+            udpProxy.onClientDatagram(address, udpBuffer);
+            return true;
+        }
         LoggingUtil.logAsync(Level.INFO,"Received UDP request: " + request);
         handleServerRequest(request,address,udpChannel);
-    }
-    private String sendUdpMessage(Server server,byte[] sendData) throws IOException {
-
-        DatagramChannel udpChannel = DatagramChannel.open();
-        InetSocketAddress serverAddress = new InetSocketAddress("localhost", server.getBackgroundPort());
-
-        ByteBuffer sendBuffer = ByteBuffer.wrap(sendData);
-        udpChannel.send(sendBuffer,serverAddress);
-        ByteBuffer receiveBuffer = ByteBuffer.allocate(1024);
-        udpChannel.configureBlocking(true);
-        udpChannel.receive(receiveBuffer);
-        receiveBuffer.flip();
-        return new String(receiveBuffer.array(), 0, receiveBuffer.limit());
+        return true;
     }
 
-    private String sendTcpMessage(Server server,String message) throws IOException {
-
-        SocketChannel socketChannel = SocketChannel.open();
-        socketChannel.connect(new InetSocketAddress("localhost", server.getBackgroundPort()));
-        socketChannel.configureBlocking(true);
-
-        ByteBuffer responseBuffer = ByteBuffer.wrap(message.getBytes());
-        socketChannel.write(responseBuffer);
+    private Backend selectUdpBackend(String routingKey) {
+        Backend[] servers = outlierDetector.getAvailable("udp");
+        return router.getStrategy("udp").select(servers, routingKey);
+    }
 
-        ByteBuffer buffer = ByteBuffer.allocate(1024);
-        int bytesRead = socketChannel.read(buffer);
-        buffer.flip();
+    private ByteBuffer encodeClientResponse(FrameDecoder client, long requestId, ByteBuffer payload) {
+        if (client.isHttp()) {
+            ByteBuffer response = BufferPool.acquire(payload.remaining());
+            return response.put(payload).flip();
+        }
+        if (client.isBinary()) {
+            return BinaryCodec.encode(BinaryCodec.OP_RESPONSE, requestId, payload);
+        }
+        return FrameUtil.encode(payload);
+    }
 
-        String response = new String(buffer.array(), 0, bytesRead);
-        buffer.clear();
-        socketChannel.close();
-        return response;
+    private ByteBuffer encodeClientError(FrameDecoder client, long requestId, String reason, boolean keepAlive) {
+        if (client.isHttp()) {
+            int status = reason.endsWith("timeout") ? 504 : 502;
+            return HttpUtil.encodeResponse(status, "text/plain", reason, keepAlive);
+        }
+        if (client.isBinary()) {
+            return BinaryCodec.encode(BinaryCodec.OP_ERROR, requestId, reason);
+        }
+        return FrameUtil.encode("Fail connect to server");
     }
 
-    private void handleClientRequest(String request,SocketChannel clientChannel) throws IOException {
-        String[] parsedMessage = request.split(" - ");
-        String responseMessage = "Fail connect to server";
+    private void handleBinaryControlRequest(ByteBuffer frame, SocketAddress address, DatagramChannel udpChannel) {
+        ByteBuffer response;
+        if (frame.remaining() < BinaryCodec.HEADER_LENGTH
+                || frame.remaining() < BinaryCodec.HEADER_LENGTH + BinaryCodec.getPayloadLength(frame)) {
+            response = BinaryCodec.encode(BinaryCodec.OP_ERROR, 0, "Truncated frame");
+        } else {
+            response = handleBinaryRegistration(frame);
+        }
         try {
-            if (parsedMessage[0].equals("case : 1")){
-                ByteBuffer responseBuffer = ByteBuffer.wrap(getAllPortState("client").getBytes());
-                clientChannel.write(responseBuffer);
-            }else if (parsedMessage[0].equals("case : 2")){
-                Server targerServer = getServerForClient(parsedMessage[1],clientChannel);
-                responseMessage = "No Available use Server";
-                if (targerServer != null){
-                    responseMessage = "connect - " + targerServer.getPort();
-                }
-                ByteBuffer responseBuffer = ByteBuffer.wrap(responseMessage.getBytes());
-                clientChannel.write(responseBuffer);
-            }else{
-                Server targerServer = getServerForClient(parsedMessage[1],clientChannel);
-                if (targerServer != null){
-                    forwardTraffic(parsedMessage[1],clientChannel,targerServer);
-                }else{
-                    ByteBuffer responseBuffer = ByteBuffer.wrap(responseMessage.getBytes());
-                    clientChannel.write(responseBuffer);
-                }
-            }
+            udpChannel.send(response, address);
         } catch (IOException e) {
-            ByteBuffer responseBuffer = ByteBuffer.wrap(responseMessage.getBytes());
-            clientChannel.write(responseBuffer);
             LoggingUtil.logAsync(Level.SEVERE,"Failed to send response: " + e.getMessage());
+        } finally {
+            BufferPool.release(response);
         }
     }
+
+    private ByteBuffer handleBinaryRegistration(ByteBuffer frame) {
+        long requestId = BinaryCodec.getRequestId(frame);
+        byte opcode = BinaryCodec.getOpcode(frame);
+        if (BinaryCodec.getVersion(frame) != BinaryCodec.VERSION) {
+            return BinaryCodec.encode(BinaryCodec.OP_ERROR, requestId, "Unsupported protocol version");
+        }
+        if (opcode == BinaryCodec.OP_HEALTH_CHECK) {
+            return BinaryCodec.encodeEmpty(BinaryCodec.OP_ACK, requestId);
+        }
+        int payloadLength = BinaryCodec.getPayloadLength(frame);
+        if ((opcode != BinaryCodec.OP_REGISTER && opcode != BinaryCodec.OP_UNREGISTER && opcode != BinaryCodec.OP_SET_WEIGHT)
+                || payloadLength < BinaryCodec.REGISTRATION_LENGTH
+                || (opcode == BinaryCodec.OP_SET_WEIGHT && payloadLength < BinaryCodec.WEIGHTED_REGISTRATION_LENGTH)) {
+            return BinaryCodec.encode(BinaryCodec.OP_ERROR, requestId, "Unsupported control opcode");
+        }
+        String protocol = BinaryCodec.protocolName(BinaryCodec.getPayloadByte(frame, 0));
+        if (protocol == null) {
+            return BinaryCodec.encode(BinaryCodec.OP_ERROR, requestId, "Unknown protocol");
+        }
+        int bp = BinaryCodec.getPayloadInt(frame, 5);
+        boolean weighted = payloadLength >= BinaryCodec.WEIGHTED_REGISTRATION_LENGTH;
+        int weight = weighted ? BinaryCodec.getPayloadInt(frame, 9) : 1;
+        int maxConnections = weighted ? BinaryCodec.getPayloadInt(frame, 13) : 0;
+        try {
+            if (opcode == BinaryCodec.OP_REGISTER) {
+                serverControl.register(protocol, bp, weight, maxConnections);
+            } else if (opcode == BinaryCodec.OP_SET_WEIGHT) {
+                serverControl.updateWeight(protocol, bp, weight, maxConnections);
+            } else {
+                serverControl.unregister(protocol, bp);
+            }
+        } catch (IllegalArgumentException e) {
+            return BinaryCodec.encode(BinaryCodec.OP_ERROR, requestId, e.getMessage());
+        }
+        return BinaryCodec.encodeEmpty(BinaryCodec.OP_ACK, requestId);
+    }
     private void handleServerRequest(
             String request,SocketAddress address,DatagramChannel udpChannel){
-        String responseMessage = handleJsonMessage(request);
+        String responseMessage = serverControl.handleJsonMessage(request);
         ByteBuffer responseBuffer = ByteBuffer.wrap(responseMessage.getBytes());
         try {
             udpChannel.send(responseBuffer,address);
@@ -200,110 +311,46 @@ public class LoadBalancer {
             LoggingUtil.logAsync(Level.SEVERE,"Failed to send response: " + e.getMessage());
         }
     }
-    private void handleServerRequest(String request, SocketChannel serverChannel) {
+    private void handleServerRequest(String request, ClientConnection serverConnection) {
 
-        String responseMessage = handleJsonMessage(request);
-        ByteBuffer responseBuffer = ByteBuffer.wrap(responseMessage.getBytes());
+        String responseMessage = serverControl.handleJsonMessage(request);
         try {
-            serverChannel.write(responseBuffer);
+            serverConnection.send(responseMessage);
         } catch (IOException e) {
             LoggingUtil.logAsync(Level.SEVERE,"Failed to send response: " + e.getMessage());
         }
     }
-    private boolean isServerRequest(String request) {
-        try {
-            JsonObject jsonRequest = JsonParser.parseString(request).getAsJsonObject();
-            return jsonRequest.has("awk") || jsonRequest.has("cmd");
-        } catch (Exception e) {
-            return false;
-        }
-    }
-    private void forwardTraffic(String message,SocketChannel clientChannel, Server server) throws IOException {
-
-        if (server.getProtocol().equals("udp")){
-            try {
-                byte[] sendData = message.getBytes();
-                String response = sendUdpMessage(server,sendData);
-                ByteBuffer clientResponse = ByteBuffer.wrap(response.getBytes());
-                clientChannel.write(clientResponse);
+    private void reassignClients(Backend removed) {
 
-            } catch (IOException e) {
-                LoggingUtil.logAsync(Level.SEVERE,"Failed to Forward request: " + e.getMessage());
-            }
-        }else{
-            try {
-                String response = sendTcpMessage(server,message);
-                ByteBuffer clientResponse = ByteBuffer.wrap(response.getBytes());
-                clientChannel.write(clientResponse);
-            } catch (IOException e) {
-                LoggingUtil.logAsync(Level.SEVERE,"Failed to Forward request: " + e.getMessage());
-            }
+        for (WorkerLoop worker : workers) {
+            worker.execute(() -> router.reassign(worker.sessions, removed));
         }
     }
-    private synchronized Server getServerForClient(String protocol,SocketChannel clientChannel) {
 
-        if (sessionTable.containsKey(clientChannel)) {
-            return sessionTable.get(clientChannel);
+    public void stop() {
+        isRunning = false;
+        if (selector != null) {
+            selector.wakeup();
         }
-        List<Server> servers = serverMap.get(protocol);
-        if (servers == null || servers.isEmpty()) {
-            LoggingUtil.logAsync(Level.SEVERE,"No Available use Server");
-            return null;
-        }
-        if (!roundRobinIndex.containsKey(protocol)) {
-            roundRobinIndex.put(protocol, 0);
-        }
-        int index = roundRobinIndex.get(protocol);
-        Server selectedServer = servers.get(index);
-        roundRobinIndex.put(protocol, (index + 1) % servers.size());
-        sessionTable.put(clientChannel, selectedServer);
-        return selectedServer;
     }
-    private void unregisterServer(String protocol,int backgroundPort){
 
-        List<Server> servers = serverMap.get(protocol);
-        servers.removeIf(server -> server.getBackgroundPort() == backgroundPort);
-        if (getTotalServerCount() == 0){
+    private void closeLoadBalancer() {
+        try {
             isRunning = false;
-            return;
-        }else{
-            serverMap.put(protocol, new ArrayList<>(servers));
-        }
-        reassignClients(protocol,backgroundPort);
-    }
-    private void reassignClients(String protocol,int backgroundPort) {
-
-        for (Map.Entry<SocketChannel, Server> entry : sessionTable.entrySet()) {
-
-            SocketChannel clientChannel = entry.getKey();
-            Server currentServer = entry.getValue();
-            if (currentServer.getBackgroundPort() == backgroundPort) {
-                Server newServer = findNewServer(protocol, currentServer.getPort());
-                if (newServer != null) {
-                    sessionTable.put(clientChannel, newServer);
-                } else {
-                    sessionTable.remove(clientChannel);
+            if (workers != null) {
+                for (WorkerLoop worker : workers) {
+                    worker.wakeup();
                 }
             }
-        }
-    }
-    private Server findNewServer(String protocol, int originalPort) {
-
-        List<Server> servers = serverMap.getOrDefault(protocol, new ArrayList<>());
-        for (Server server : servers) {
-            if (server.getPort() == originalPort) {
-                return server;
+            for (SocketChannel clientChannel : blockingClients) {
+                clientChannel.close();
+            }
+            if (adminServer != null) {
+                adminServer.close();
+            }
+            if (udpProxy != null) {
+                udpProxy.close();
             }
-        }
-        if (!servers.isEmpty()) {
-            return servers.getFirst();
-        }
-        return null;
-    }
-
-    private void closeLoadBalancer() {
-        try {
-            isRunning = false;
             if (selector != null && selector.isOpen()) {
                 selector.close();
             }
@@ -313,9 +360,8 @@ public class LoadBalancer {
             if (udpChannel != null && udpChannel.isOpen()) {
                 udpChannel.close();
             }
-            sessionTable.clear();
-            roundRobinIndex.clear();
             try {
+                scheduler.shutdown();
                 if (!scheduler.awaitTermination(10, TimeUnit.SECONDS)) {
                     scheduler.shutdownNow();
                 }
@@ -323,127 +369,1061 @@ public class LoadBalancer {
                 scheduler.shutdownNow();
                 Thread.currentThread().interrupt();
             }
+            if (healthChecker != null) {
+                healthChecker.close();
+            }
             String output = """
                     ====================
                     Load Balancer closed successfully.
                     ====================
                     """;
             System.out.println(output);
+            BufferPool.release(udpBuffer);
+            BufferPool.reportLeaks();
             LoggingUtil.logAsync(Level.INFO,"Load Balancer closed successfully.");
         } catch (IOException e) {
             LoggingUtil.logAsync(Level.SEVERE,"Error while closing Load Balancer: " + e.getMessage());
         }
     }
-    private void registerServer(String protocol,int backgroundPost) {
-        Server server = switch (protocol) {
-            case "tcp" -> TCPServer.TCPServerManager.getServerInstance(backgroundPost);
-            case "udp" -> UDPServer.UDPServerManager.getServerInstance(backgroundPost);
-            case "http" -> APIServer.APIServerManager.getServerInstance(backgroundPost);
-            default -> throw new IllegalArgumentException("Unknown protocol: " + protocol);
-        };
-        serverMap.computeIfAbsent(protocol, k -> new ArrayList<>()).add(server);
-        roundRobinIndex.putIfAbsent(protocol, 0);
-        String output = "\n" +
-                "====================\n" +
-                "Load Balancer State : New Register " + server.getProtocol() + " Server - " +
-                " Client & Background port : " + server.getPort() + " / " + server.getBackgroundPort() +"\n" +
-                "Remaining Server List\n" +
-                getAllPortState("server") + "\n" +
-                "====================\n" +
-                "\n";
-        System.out.print(output);
+    private void maintainConnectionPools() {
+        for (Backend[] servers : serverRegistry.getSnapshot().values()) {
+            for (Backend server : servers) {
+                if (!server.getProtocol().equals("udp")) {
+                    server.getConnectionPool().evictIdle();
+                    server.getConnectionPool().fillMinIdle();
+                    if (server.getHttpConnectionPool() != null) {
+                        server.getHttpConnectionPool().evictIdle();
+                    }
+                }
+            }
+        }
+    }
 
+    private void refreshSlowStartServers() {
+        // Republish pools with a ramping server so weight-driven strategies rebuild with its current share,
+        // plus one last time once the ramp has finished.
+        Set<String> ramping = new HashSet<>();
+        for (Map.Entry<String, Backend[]> entry : serverRegistry.getSnapshot().entrySet()) {
+            for (Backend server : entry.getValue()) {
+                if (server.isSlowStarting()) {
+                    ramping.add(entry.getKey());
+                    break;
+                }
+            }
+        }
+        for (String protocol : rampingProtocols) {
+            if (!ramping.contains(protocol)) {
+                serverRegistry.refresh(protocol);
+            }
+        }
+        for (String protocol : ramping) {
+            serverRegistry.refresh(protocol);
+        }
+        rampingProtocols = ramping;
     }
 
-    private void startHealthCheck() {
+    private void startHealthCheck() throws IOException {
+        healthChecker = new HealthChecker(HEALTH_PROBE_TIMEOUT_MS, ConfigUtil.getLong("lb.timer.tickMs", 10));
         scheduler.scheduleAtFixedRate(() -> {
             long start = System.currentTimeMillis();
             System.out.println();
             System.out.println("====================");
             System.out.println("Running health check for servers");
-            for (List<Server> servers : serverMap.values()) {
-                servers.removeIf(server -> {
-                    boolean isHealthy = checkServerHealth(server);
-                    if (isHealthy) {
-                        System.out.println(server.getProtocol()+" Server on Client & Background port : " + server.getPort() + " / " + server.getBackgroundPort() + " is healthy.");
-                    } else {
-                        System.out.println(server.getProtocol()+" Server on Client & Background port : " + server.getPort() + " / " + server.getBackgroundPort() + " is unhealthy. Removing the Server");
+            List<Backend> probed = new ArrayList<>();
+            for (Backend[] servers : serverRegistry.getSnapshot().values()) {
+                probed.addAll(Arrays.asList(servers));
+            }
+            Set<Backend> healthy;
+            try {
+                healthy = healthChecker.check(probed);
+            } catch (IOException e) {
+                LoggingUtil.logAsync(Level.SEVERE,"Health check round failed: " + e.getMessage());
+                return;
+            }
+            for (Backend server : probed) {
+                if (healthy.contains(server)) {
+                    System.out.println(server.getProtocol()+" Server on Client & Background port : " + server.getPort() + " / " + server.getBackgroundPort() + " is healthy.");
+                } else {
+                    System.out.println(server.getProtocol()+" Server on Client & Background port : " + server.getPort() + " / " + server.getBackgroundPort() + " is unhealthy. Removing the Server");
+                    if (serverRegistry.remove(server)) {
+                        reassignClients(server);
                     }
-                    return !isHealthy;
-                });
+                    server.invalidateConnectionPools();
+                }
             }
             System.out.println("Remaining Server List");
-            System.out.println(getAllPortState("server"));
+            System.out.println(serverRegistry.getAllPortState("server"));
             long finish = System.currentTimeMillis();
             long timeMs = finish - start;
             System.out.println("Time to perform health check : " + timeMs + "ms");
             System.out.println("====================");
             System.out.println();
-            if (getTotalServerCount() == 0){
-                sessionTable.clear();
-                roundRobinIndex.clear();
+            System.out.println("Client sessions : " + SessionTable.getStats());
+            System.out.println("Timeouts : " + TimingWheel.getStats());
+            System.out.println("UDP proxy : " + UdpProxy.getStats());
+            if (udpProxy != null) {
+                System.out.println("UDP drain : front " + udpDrainCounter.getStats() + " / upstream " + udpProxy.getDrainCounter().getStats());
+            }
+            System.out.println("Outliers : ejected=" + outlierDetector.getEjectedCount() + " " + OutlierDetector.getStats());
+            if (serverRegistry.getTotalCount() == 0){
+                for (WorkerLoop worker : workers) {
+                    worker.execute(worker.sessions::clear);
+                }
             }
         }, 0, 10, TimeUnit.SECONDS);
+        scheduler.scheduleWithFixedDelay(this::maintainConnectionPools, 5, 5, TimeUnit.SECONDS);
+        scheduler.scheduleWithFixedDelay(this::refreshSlowStartServers, 1, 1, TimeUnit.SECONDS);
+        long outlierIntervalMs = ConfigUtil.getLong("lb.outlier.intervalMs", 5000);
+        scheduler.scheduleWithFixedDelay(outlierDetector::detectLatencyOutliers, outlierIntervalMs, outlierIntervalMs, TimeUnit.MILLISECONDS);
     }
 
-    private boolean checkServerHealth(Server server) {
-        try{
-            byte[] sendData = MessageUtil.getHealthCheckMessage().getBytes();
-            String response = sendUdpMessage(server,sendData);
-            return MessageUtil.getHealthCheckAwkMessage().equals(response);
-
-        } catch (IOException e) {
-            return false;
+    private ByteBuffer encodeServerList(long requestId) {
+        Map<String, Backend[]> snapshot = serverRegistry.getSnapshot();
+        int capacity = 2;
+        for (Backend[] serverList : snapshot.values()) {
+            capacity += serverList.length * 5;
+        }
+        ByteBuffer payload = BufferPool.acquire(capacity);
+        payload.putShort((short) 0);
+        int count = 0;
+        for (Backend[] serverList : snapshot.values()) {
+            for (Backend server : serverList) {
+                byte protocol = BinaryCodec.protocolCode(server.getProtocol());
+                if (!containsServerEntry(payload, count, protocol, server.getPort())) {
+                    payload.put(protocol).putInt(server.getPort());
+                    count++;
+                }
+            }
+        }
+        payload.putShort(0, (short) count).flip();
+        try {
+            return BinaryCodec.encode(BinaryCodec.OP_RESPONSE, requestId, payload);
+        } finally {
+            BufferPool.release(payload);
         }
     }
-    private String handleJsonMessage(String request){
-        try{
-            JsonObject jsonRequest = JsonParser.parseString(request).getAsJsonObject();
-            String cmd = jsonRequest.get("cmd").getAsString();
-            String protocol = jsonRequest.get("protocol").getAsString();
-            int bp = jsonRequest.get("bp").getAsInt();
-            if (cmd.equals("register")){
-                registerServer(protocol,bp);
-            }else{
-                unregisterServer(protocol,bp);
-            }
-            return MessageUtil.getSuccessAwkMessage();
-        }catch(JsonParseException e){
-            return MessageUtil.getFailedAwkMessage(e.getMessage());
+
+    private boolean containsServerEntry(ByteBuffer entries, int count, byte protocol, int port) {
+        for (int i = 0; i < count; i++) {
+            int offset = 2 + i * 5;
+            if (entries.get(offset) == protocol && entries.getInt(offset + 1) == port) {
+                return true;
+            }
         }
+        return false;
     }
-    private int getTotalServerCount(){
-        return serverMap.values().stream()
-                .mapToInt(List::size)
-                .sum();
+
+    private class WorkerLoop implements Runnable {
+
+        private final Selector selector;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final ByteBuffer datagramBuffer = BufferPool.acquire(65536);
+        private final SessionTable sessions = new SessionTable(ConfigUtil.getInt("lb.session.maxPerWorker", 100000));
+        private final TimingWheel timers = new TimingWheel(ConfigUtil.getLong("lb.timer.tickMs", 10));
+        private final UdpForwarder udpForwarder;
+        private final HttpParser pipelinedRequest = new HttpParser();
+
+        private volatile boolean running = true;
+
+        private WorkerLoop() throws IOException {
+            selector = Selector.open();
+            udpForwarder = UdpForwarder.open(selector, ConfigUtil.getInt("lb.udp.forwarderSockets", 1));
+        }
+
+        private void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        private void register(SocketChannel clientChannel) {
+            execute(() -> {
+                ClientConnection connection = new ClientConnection(clientChannel);
+                try {
+                    connection.setKey(clientChannel.register(selector, SelectionKey.OP_READ, connection));
+                    scheduleIdleTimeout(connection, IDLE_TIMEOUT_MS);
+                } catch (IOException e) {
+                    LoggingUtil.logAsync(Level.SEVERE,"Failed to register client connection: " + e.getMessage());
+                    connection.close();
+                }
+            });
+        }
+
+        private void wakeup() {
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (isRunning) {
+                    selector.select(timers.getWaitMillis());
+                    runTasks();
+                    timers.advance();
+                    Iterator<SelectionKey> keyIterator = selector.selectedKeys().iterator();
+                    while (keyIterator.hasNext()) {
+                        SelectionKey key = keyIterator.next();
+                        keyIterator.remove();
+                        if (!key.isValid()) {
+                            // Closed by a timer or another handler earlier in this pass.
+                            continue;
+                        }
+                        try {
+                            if (key.attachment() instanceof BackendExchange exchange) {
+                                handleBackendEvent(key, exchange);
+                            } else if (key.attachment() instanceof ClientConnection connection) {
+                                handleClientEvent(key, connection);
+                            } else if (key.attachment() instanceof UdpForwarder) {
+                                handleForwarderEvent((DatagramChannel) key.channel());
+                            }
+                        } catch (RuntimeException e) {
+                            // A bug triggered by one connection must not take down every client on this loop.
+                            LoggingUtil.logAsync(Level.SEVERE,"Unexpected error handling connection, closing it: " + e);
+                            abandon(key);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                LoggingUtil.logAsync(Level.SEVERE,"Error during worker loop operation: " + e.getMessage());
+            } finally {
+                running = false;
+                closeWorker();
+            }
+        }
+
+        private void runTasks() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    LoggingUtil.logAsync(Level.SEVERE,"Unexpected error in worker task: " + e);
+                }
+            }
+        }
+
+        private void abandon(SelectionKey key) {
+            if (key.attachment() instanceof BackendExchange exchange) {
+                timers.cancel(exchange.getTimeout());
+                try {
+                    key.channel().close();
+                } catch (IOException e) {
+                    LoggingUtil.logAsync(Level.SEVERE,"Failed to close backend connection: " + e.getMessage());
+                }
+                exchange.release();
+                closeClient(exchange.getClient());
+            } else if (key.attachment() instanceof ClientConnection connection) {
+                closeClient(connection);
+            }
+        }
+
+        private void scheduleIdleTimeout(ClientConnection connection, long delayMillis) {
+            connection.setIdleTimeout(timers.schedule(TimingWheel.Kind.IDLE, delayMillis, () -> {
+                if (!connection.isOpen()) {
+                    return;
+                }
+                // Activity only stamps the connection; the timer re-arms itself for the remaining idle time.
+                long idleMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - connection.getLastActivityNanos());
+                if (connection.isExchangeInFlight() || idleMillis < IDLE_TIMEOUT_MS) {
+                    scheduleIdleTimeout(connection, connection.isExchangeInFlight() ? IDLE_TIMEOUT_MS : IDLE_TIMEOUT_MS - idleMillis);
+                    return;
+                }
+                LoggingUtil.logAsync(Level.INFO,"Closing idle client connection.");
+                closeClient(connection);
+            }));
+        }
+
+        private void scheduleExchangeTimeout(SelectionKey key, BackendExchange exchange, TimingWheel.Kind kind) {
+            timers.cancel(exchange.getTimeout());
+            long delayMillis = kind == TimingWheel.Kind.CONNECT ? CONNECT_TIMEOUT_MS : REQUEST_TIMEOUT_MS;
+            exchange.setTimeout(timers.schedule(kind, delayMillis, () -> {
+                String reason = kind == TimingWheel.Kind.CONNECT ? "Backend connect timeout" : "Backend request timeout";
+                LoggingUtil.logAsync(Level.WARNING,reason + " for " + exchange.getBackend().getProtocol() + " Server " + exchange.getBackend().getPort());
+                failExchange(key, exchange, reason);
+            }));
+        }
+
+        private Backend getServerForClient(String protocol,ClientConnection connection,String routingKey) {
+            return router.route(sessions, connection, protocol, routingKey, this::closeClient);
+        }
+
+        private void closeClient(ClientConnection connection) {
+            timers.cancel(connection.getIdleTimeout());
+            sessions.remove(connection);
+            connection.close();
+        }
+
+        private void closeWorker() {
+            try {
+                for (SelectionKey key : selector.keys()) {
+                    if (key.attachment() instanceof ClientConnection connection) {
+                        closeClient(connection);
+                    } else {
+                        key.channel().close();
+                    }
+                }
+                selector.close();
+            } catch (IOException e) {
+                LoggingUtil.logAsync(Level.SEVERE,"Error while closing worker loop: " + e.getMessage());
+            } finally {
+                udpForwarder.close();
+                BufferPool.release(datagramBuffer);
+            }
+        }
+
+        private void handleClientEvent(SelectionKey key, ClientConnection connection) {
+            try {
+                if (key.isWritable()) {
+                    connection.flush();
+                    if (connection.isCloseAfterResponse() && !connection.hasPendingWrites() && !connection.isExchangeInFlight()) {
+                        closeClient(connection);
+                        return;
+                    }
+                }
+                if (key.isValid() && key.isReadable()) {
+                    handleTcpRequest(connection);
+                }
+            } catch (IOException e) {
+                LoggingUtil.logAsync(Level.SEVERE,"Error during client request: " + e.getMessage());
+                closeClient(connection);
+            }
+        }
+
+        private void handleTcpRequest(ClientConnection connection) throws IOException {
+            int bytesRead;
+            try {
+                bytesRead = connection.getDecoder().read(connection.getChannel());
+            } catch (IOException e) {
+                if (e.getMessage() != null && e.getMessage().contains("Connection reset")) {
+                    LoggingUtil.logAsync(Level.INFO,"Client connection closed successfully.");
+                    closeClient(connection);
+                    return;
+                } else {
+                    throw e;
+                }
+            }
+            if (bytesRead == -1) {
+                closeClient(connection);
+                LoggingUtil.logAsync(Level.INFO,"Client connection closed.");
+                return;
+            }
+            connection.touch();
+            ByteBuffer frame;
+            try {
+                while (connection.isOpen() && (frame = connection.getDecoder().nextFrame()) != null) {
+                    if (connection.isExchangeInFlight() || !connection.getPendingRequests().isEmpty()) {
+                        ByteBuffer pending = BufferPool.acquire(frame.remaining());
+                        pending.put(frame).flip();
+                        connection.getPendingRequests().add(pending);
+                    } else {
+                        handleFrame(frame, connection);
+                    }
+                }
+            } catch (IOException e) {
+                if (!connection.isHttp() || !connection.isOpen()) {
+                    throw e;
+                }
+                LoggingUtil.logAsync(Level.WARNING,"Rejecting malformed HTTP request: " + e.getMessage());
+                if (connection.isExchangeInFlight()) {
+                    // The 400 cannot overtake the response still owed for an earlier request.
+                    closeClient(connection);
+                    return;
+                }
+                connection.setCloseAfterResponse(true);
+                finishClientExchange(connection, HttpUtil.encodeResponse(400, "text/plain", "Malformed HTTP request", false));
+            }
+        }
+
+        private void processPendingRequests(ClientConnection connection) throws IOException {
+            ByteBuffer frame;
+            while (connection.isOpen() && !connection.isExchangeInFlight()
+                    && (frame = connection.getPendingRequests().poll()) != null) {
+                try {
+                    handleFrame(frame, connection);
+                } finally {
+                    BufferPool.release(frame);
+                }
+            }
+        }
+
+        private void handleFrame(ByteBuffer frame, ClientConnection connection) throws IOException {
+            if (connection.isHttp()) {
+                handleHttpRequest(frame, connection);
+                return;
+            }
+            if (connection.isBinary()) {
+                handleBinaryRequest(frame, connection);
+                return;
+            }
+            String request = BufferPool.toString(frame);
+            LoggingUtil.logAsync(Level.INFO,"Received TCP request: " + request);
+            if (MessageUtil.isServerRequest(request)) {
+                handleServerRequest(request, connection);
+            } else {
+                handleClientRequest(request, connection);
+            }
+        }
+
+        private void handleBinaryRequest(ByteBuffer frame, ClientConnection connection) throws IOException {
+            long requestId = BinaryCodec.getRequestId(frame);
+            if (BinaryCodec.getVersion(frame) != BinaryCodec.VERSION) {
+                connection.send(BinaryCodec.encode(BinaryCodec.OP_ERROR, requestId, "Unsupported protocol version"));
+                return;
+            }
+            switch (BinaryCodec.getOpcode(frame)) {
+                case BinaryCodec.OP_LIST_SERVERS -> connection.send(encodeServerList(requestId));
+                case BinaryCodec.OP_STATS -> connection.send(BinaryCodec.encode(BinaryCodec.OP_RESPONSE, requestId, MetricsReport.toJson(serverRegistry)));
+                case BinaryCodec.OP_CONNECT -> {
+                    int payloadLength = BinaryCodec.getPayloadLength(frame);
+                    String protocol = payloadLength > 0
+                            ? BinaryCodec.protocolName(BinaryCodec.getPayloadByte(frame, 0)) : null;
+                    String routingKey = payloadLength > 1
+                            ? BufferPool.toString(BinaryCodec.getPayload(frame).position(1)) : null;
+                    Backend targerServer = protocol != null ? getServerForClient(protocol, connection, routingKey) : null;
+                    if (targerServer != null) {
+                        connection.send(BinaryCodec.encodeInt(BinaryCodec.OP_RESPONSE, requestId, targerServer.getPort()));
+                    } else {
+                        connection.send(BinaryCodec.encode(BinaryCodec.OP_ERROR, requestId, "No Available use Server"));
+                    }
+                }
+                case BinaryCodec.OP_FORWARD -> {
+                    ClientSession session = sessions.get(connection);
+                    if (session == null) {
+                        connection.send(BinaryCodec.encode(BinaryCodec.OP_ERROR, requestId, "Fail connect to server"));
+                        return;
+                    }
+                    Backend targerServer = getServerForClient(session.getBackend().getProtocol(), connection, null);
+                    if (targerServer == null) {
+                        connection.send(BinaryCodec.encode(BinaryCodec.OP_ERROR, requestId, "No Available use Server"));
+                        return;
+                    }
+                    try {
+                        forwardTraffic(BinaryCodec.getPayload(frame), connection, targerServer, requestId);
+                    } catch (IOException e) {
+                        LoggingUtil.logAsync(Level.SEVERE,"Failed to Forward request: " + e.getMessage());
+                        connection.send(BinaryCodec.encode(BinaryCodec.OP_ERROR, requestId, "Fail connect to server"));
+                    }
+                }
+                case BinaryCodec.OP_REGISTER, BinaryCodec.OP_UNREGISTER, BinaryCodec.OP_SET_WEIGHT, BinaryCodec.OP_HEALTH_CHECK ->
+                        connection.send(handleBinaryRegistration(frame));
+                default -> connection.send(BinaryCodec.encode(BinaryCodec.OP_ERROR, requestId, "Unknown opcode"));
+            }
+        }
+
+        private void handleHttpRequest(ByteBuffer frame, ClientConnection connection) {
+            HttpParser request = connection.getDecoder().getHttpParser();
+            if (request.getMessage() != frame) {
+                // A pipelined request that waited behind an earlier one was copied aside; parse its head again.
+                request = pipelinedRequest;
+                request.reset();
+                try {
+                    request.parse(frame, frame.position(), frame.limit());
+                } catch (IOException e) {
+                    throw new IllegalStateException("Queued HTTP request no longer parses", e);
+                }
+            }
+            boolean keepAlive = request.isKeepAlive();
+            boolean head = request.isMethod("HEAD");
+            connection.setCloseAfterResponse(!keepAlive);
+            Backend targerServer = getServerForClient("http", connection, null);
+            if (targerServer == null) {
+                finishClientExchange(connection, HttpUtil.encodeResponse(503, "text/plain", "No Available use Server", keepAlive));
+                return;
+            }
+            try {
+                BackendExchange exchange = forwardTraffic(frame, connection, targerServer, 0);
+                exchange.getResponseDecoder().getHttpParser().setResponseToHead(head);
+            } catch (IOException e) {
+                LoggingUtil.logAsync(Level.SEVERE,"Failed to Forward request: " + e.getMessage());
+                finishClientExchange(connection, HttpUtil.encodeResponse(502, "text/plain", "Fail connect to server", keepAlive));
+            }
+        }
+
+        private void handleClientRequest(String request,ClientConnection connection) throws IOException {
+            String[] parsedMessage = request.split(" - ", 2);
+            String responseMessage = "Fail connect to server";
+            SocketChannel clientChannel = connection.getChannel();
+            try {
+                if (parsedMessage[0].equals("case : 1")){
+                    connection.send(serverRegistry.getAllPortState("client"));
+                }else if (parsedMessage[0].equals("case : 4")){
+                    connection.send(MetricsReport.toJson(serverRegistry));
+                }else if (parsedMessage[0].equals("case : 2")){
+                    String[] target = parsedMessage.length > 1 ? parsedMessage[1].split(" - ", 2) : new String[]{""};
+                    Backend targerServer = getServerForClient(target[0],connection,target.length > 1 ? target[1] : null);
+                    responseMessage = "No Available use Server";
+                    if (targerServer != null){
+                        responseMessage = "connect - " + targerServer.getPort();
+                    }
+                    connection.send(responseMessage);
+                }else{
+                    String payload = parsedMessage.length > 1 ? parsedMessage[1] : "";
+                    Backend targerServer = getServerForClient(payload,connection,null);
+                    if (targerServer != null){
+                        forwardTraffic(ByteBuffer.wrap(payload.getBytes(StandardCharsets.UTF_8)),connection,targerServer,0);
+                    }else{
+                        connection.send(responseMessage);
+                    }
+                }
+            } catch (IOException e) {
+                connection.send(responseMessage);
+                LoggingUtil.logAsync(Level.SEVERE,"Failed to send response: " + e.getMessage());
+            }
+        }
+
+        private BackendExchange forwardTraffic(ByteBuffer payload,ClientConnection connection, Backend server, long requestId) throws IOException {
+
+            boolean datagram = server.getProtocol().equals("udp");
+            // HTTP requests travel to the backend as they arrived; everything else is framed.
+            BackendExchange exchange = new BackendExchange(connection, server, payload, !datagram && !connection.isHttp(), requestId);
+            boolean localBackPressure = false;
+            server.onRequestStart();
+            try {
+                if (datagram){
+                    if (!udpForwarder.send(exchange)) {
+                        localBackPressure = true;
+                        throw new IOException("UDP send buffer full");
+                    }
+                    scheduleExchangeTimeout(null, exchange, TimingWheel.Kind.REQUEST);
+                }else{
+                    SocketChannel pooledChannel = exchange.getConnectionPool().acquire();
+                    if (pooledChannel != null) {
+                        exchange.setPooledConnection(true);
+                        SelectionKey key = pooledChannel.keyFor(selector);
+                        if (key != null && key.isValid()) {
+                            key.attach(exchange);
+                            key.interestOps(SelectionKey.OP_WRITE);
+                        } else {
+                            key = pooledChannel.register(selector, SelectionKey.OP_WRITE, exchange);
+                        }
+                        scheduleExchangeTimeout(key, exchange, TimingWheel.Kind.REQUEST);
+                    } else {
+                        openBackendConnection(exchange);
+                    }
+                }
+                connection.setExchangeInFlight(true);
+            } catch (IOException e) {
+                exchange.release();
+                server.onRequestFailed();
+                // A full local send buffer is our congestion, not the backend's, so it must not count towards ejection.
+                if (!localBackPressure) {
+                    outlierDetector.onFailure(server);
+                }
+                throw e;
+            }
+            return exchange;
+        }
+
+        private void openBackendConnection(BackendExchange exchange) throws IOException {
+            SocketChannel backendChannel = SocketChannel.open();
+            try {
+                backendChannel.configureBlocking(false);
+                if (backendChannel.connect(exchange.getBackend().getConnectionPool().getAddress())) {
+                    SelectionKey key = backendChannel.register(selector, SelectionKey.OP_WRITE, exchange);
+                    scheduleExchangeTimeout(key, exchange, TimingWheel.Kind.REQUEST);
+                } else {
+                    SelectionKey key = backendChannel.register(selector, SelectionKey.OP_CONNECT, exchange);
+                    scheduleExchangeTimeout(key, exchange, TimingWheel.Kind.CONNECT);
+                }
+            } catch (IOException e) {
+                backendChannel.close();
+                throw e;
+            }
+        }
+
+        private void handleBackendEvent(SelectionKey key, BackendExchange exchange) {
+            try {
+                if (key.isConnectable()) {
+                    ((SocketChannel) key.channel()).finishConnect();
+                    key.interestOps(SelectionKey.OP_WRITE);
+                    scheduleExchangeTimeout(key, exchange, TimingWheel.Kind.REQUEST);
+                } else if (key.isWritable()) {
+                    SocketChannel backendChannel = (SocketChannel) key.channel();
+                    backendChannel.write(exchange.getRequest());
+                    if (!exchange.getRequest().hasRemaining()) {
+                        key.interestOps(SelectionKey.OP_READ);
+                    }
+                } else if (key.isReadable()) {
+                    readStreamResponse(key, (SocketChannel) key.channel(), exchange);
+                }
+            } catch (IOException e) {
+                if (exchange.isPooledConnection() && !exchange.hasResponseBytes()) {
+                    retryExchange(key, exchange);
+                    return;
+                }
+                LoggingUtil.logAsync(Level.SEVERE,"Failed to Forward request: " + e.getMessage());
+                failExchange(key, exchange);
+            }
+        }
+
+        private void handleForwarderEvent(DatagramChannel channel) {
+            try {
+                BackendExchange exchange;
+                // Same per-wakeup budget as the front socket, so one busy forwarder socket cannot monopolise the worker.
+                for (int drained = 0; drained < udpDrainBudget && (exchange = udpForwarder.receive(channel, datagramBuffer)) != null; drained++) {
+                    if (BinaryCodec.getOpcode(datagramBuffer) == BinaryCodec.OP_RESPONSE) {
+                        completeExchange(null, exchange, encodeResponse(exchange, BinaryCodec.getPayload(datagramBuffer)));
+                    } else {
+                        failExchange(null, exchange, BufferPool.toString(BinaryCodec.getPayload(datagramBuffer)));
+                    }
+                }
+            } catch (IOException e) {
+                LoggingUtil.logAsync(Level.SEVERE,"Failed to read from UDP forwarder: " + e.getMessage());
+            }
+        }
+
+        private void readStreamResponse(SelectionKey key, SocketChannel backendChannel, BackendExchange exchange) throws IOException {
+            FrameDecoder decoder = exchange.getResponseDecoder();
+            boolean closed = decoder.read(backendChannel) == -1;
+            // An HTTP response without a length ends where the backend closes the connection.
+            ByteBuffer response = closed ? decoder.endOfStream() : decoder.nextFrame();
+            if (closed && response == null) {
+                throw new IOException("Backend closed connection before responding");
+            }
+            while (response != null && decoder.isHttp() && decoder.getHttpParser().getStatus() / 100 == 1) {
+                // Interim responses such as 100 Continue are relayed at once; the final one follows on the same connection.
+                exchange.getClient().send(encodeResponse(exchange, response));
+                response = decoder.nextFrame();
+            }
+            if (response == null) {
+                return;
+            }
+            boolean reusable = !closed && (!decoder.isHttp() || decoder.getHttpParser().isKeepAlive());
+            completeExchange(key, exchange, encodeResponse(exchange, response), reusable);
+        }
+
+        private ByteBuffer encodeResponse(BackendExchange exchange, ByteBuffer payload) {
+            return encodeClientResponse(exchange.getClient().getDecoder(), exchange.getRequestId(), payload);
+        }
+
+        private void completeExchange(SelectionKey key, BackendExchange exchange, ByteBuffer responseFrame) throws IOException {
+            completeExchange(key, exchange, responseFrame, true);
+        }
+
+        private void completeExchange(SelectionKey key, BackendExchange exchange, ByteBuffer responseFrame, boolean reusable) throws IOException {
+            timers.cancel(exchange.getTimeout());
+            // Datagram exchanges have no key of their own: the forwarder already dropped their correlation.
+            if (key != null) {
+                key.interestOps(0);
+                key.attach(null);
+                if (reusable) {
+                    exchange.getConnectionPool().release((SocketChannel) key.channel());
+                } else {
+                    key.channel().close();
+                }
+            }
+            exchange.getBackend().onRequestComplete(System.nanoTime() - exchange.getStartNanos());
+            exchange.getBackend().recordBytes(exchange.getRequest().limit(), responseFrame.remaining());
+            outlierDetector.onSuccess(exchange.getBackend());
+            exchange.release();
+            finishClientExchange(exchange.getClient(), responseFrame);
+        }
+
+        private void retryExchange(SelectionKey key, BackendExchange exchange) {
+            // A pooled connection may have been closed by the backend while it was idle.
+            try {
+                key.channel().close();
+                exchange.getRequest().rewind();
+                exchange.setPooledConnection(false);
+                openBackendConnection(exchange);
+            } catch (IOException e) {
+                LoggingUtil.logAsync(Level.SEVERE,"Failed to Forward request: " + e.getMessage());
+                failExchange(key, exchange);
+            }
+        }
+
+        private void failExchange(SelectionKey key, BackendExchange exchange) {
+            failExchange(key, exchange, "Fail connect to server");
+        }
+
+        private void failExchange(SelectionKey key, BackendExchange exchange, String reason) {
+            timers.cancel(exchange.getTimeout());
+            if (key == null) {
+                udpForwarder.cancel(exchange);
+            } else {
+                try {
+                    key.channel().close();
+                } catch (IOException e) {
+                    LoggingUtil.logAsync(Level.SEVERE,"Failed to close backend connection: " + e.getMessage());
+                }
+            }
+            exchange.getBackend().onRequestFailed();
+            exchange.getBackend().recordBytes(exchange.getRequest().position(), 0);
+            outlierDetector.onFailure(exchange.getBackend());
+            exchange.release();
+            ClientConnection client = exchange.getClient();
+            finishClientExchange(client, encodeClientError(client.getDecoder(), exchange.getRequestId(), reason, !client.isCloseAfterResponse()));
+        }
+
+        private void finishClientExchange(ClientConnection connection, ByteBuffer responseFrame) {
+            connection.setExchangeInFlight(false);
+            try {
+                connection.send(responseFrame);
+                if (connection.isCloseAfterResponse()) {
+                    // Requests pipelined behind "Connection: close" are dropped, as HTTP/1.1 requires.
+                    if (!connection.hasPendingWrites()) {
+                        closeClient(connection);
+                    }
+                    return;
+                }
+                processPendingRequests(connection);
+            } catch (IOException e) {
+                LoggingUtil.logAsync(Level.SEVERE,"Failed to send response: " + e.getMessage());
+                closeClient(connection);
+            }
+        }
     }
-    private String getAllPortState(String type){
-        StringBuilder result = new StringBuilder();
-        Set<String> uniqueServers = new HashSet<>();
-
-        for (Map.Entry<String, List<Server>> entry : serverMap.entrySet()) {
-            List<Server> serverList = entry.getValue();
-
-            for (Server server : serverList) {
-                int targetPort = type.equals("client") ? server.getPort() : server.getBackgroundPort();
-                String uniqueKey = server.getProtocol() + ":" + targetPort;
-                if (uniqueServers.add(uniqueKey)) {
-                    JsonObject jsonObject = new JsonObject();
-                    jsonObject.addProperty("Protocol", server.getProtocol());
-                    jsonObject.addProperty("Port", server.getPort());
-                    if (!type.equals("client")){
-                        jsonObject.addProperty("Background Port", targetPort);
+
+    /**
+     * Blocking counterpart of WorkerLoop for lb.engine=virtual. One virtual thread owns one client connection and
+     * runs its backend exchanges itself with plain blocking sockets; responses stay in request order because the
+     * next request is not read until the current one is answered.
+     */
+    private class BlockingClient implements Runnable {
+
+        private final SocketChannel channel;
+        private final FrameDecoder decoder = new FrameDecoder();
+        private Backend backend;
+        private String routingKey;
+        private final byte[] transferBuffer = new byte[4096];
+        private DatagramChannel datagramChannel;
+        private byte[] datagramBuffer;
+        private long nextCorrelationId = 1;
+
+        private BlockingClient(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void run() {
+            blockingClients.add(channel);
+            try {
+                channel.configureBlocking(true);
+                channel.socket().setSoTimeout((int) IDLE_TIMEOUT_MS);
+                ReadableByteChannel input = new TimedInput(channel.socket().getInputStream(), transferBuffer);
+                while (isRunning) {
+                    if (decoder.read(input) == -1) {
+                        LoggingUtil.logAsync(Level.INFO,"Client connection closed.");
+                        return;
                     }
-                    result.append(jsonObject).append("\n");
+                    ByteBuffer frame;
+                    while ((frame = nextFrame()) != null) {
+                        if (!handleFrame(frame)) {
+                            return;
+                        }
+                    }
+                }
+            } catch (SocketTimeoutException e) {
+                LoggingUtil.logAsync(Level.INFO,"Closing idle client connection.");
+            } catch (IOException e) {
+                if (isRunning) {
+                    LoggingUtil.logAsync(Level.SEVERE,"Error during client request: " + e.getMessage());
                 }
+            } finally {
+                close();
             }
         }
-        if (!result.isEmpty()) {
-            result.setLength(result.length() - 1);
-        }else{
-            return "No Server Register";
+
+        private ByteBuffer nextFrame() throws IOException {
+            try {
+                return decoder.nextFrame();
+            } catch (IOException e) {
+                if (decoder.isHttp()) {
+                    LoggingUtil.logAsync(Level.WARNING,"Rejecting malformed HTTP request: " + e.getMessage());
+                    write(HttpUtil.encodeResponse(400, "text/plain", "Malformed HTTP request", false));
+                }
+                throw e;
+            }
+        }
+
+        /**
+         * Answers one request; returns false when the connection should be closed.
+         */
+        private boolean handleFrame(ByteBuffer frame) throws IOException {
+            if (decoder.isHttp()) {
+                return handleHttpRequest();
+            }
+            if (decoder.isBinary()) {
+                handleBinaryRequest(frame);
+                return true;
+            }
+            String request = BufferPool.toString(frame);
+            LoggingUtil.logAsync(Level.INFO,"Received TCP request: " + request);
+            if (MessageUtil.isServerRequest(request)) {
+                write(FrameUtil.encode(serverControl.handleJsonMessage(request)));
+                return true;
+            }
+            String[] parsedMessage = request.split(" - ", 2);
+            if (parsedMessage[0].equals("case : 1")) {
+                write(FrameUtil.encode(serverRegistry.getAllPortState("client")));
+            } else if (parsedMessage[0].equals("case : 4")) {
+                write(FrameUtil.encode(MetricsReport.toJson(serverRegistry)));
+            } else if (parsedMessage[0].equals("case : 2")) {
+                String[] target = parsedMessage.length > 1 ? parsedMessage[1].split(" - ", 2) : new String[]{""};
+                Backend targerServer = getServer(target[0], target.length > 1 ? target[1] : null);
+                write(FrameUtil.encode(targerServer != null ? "connect - " + targerServer.getPort() : "No Available use Server"));
+            } else {
+                String payload = parsedMessage.length > 1 ? parsedMessage[1] : "";
+                Backend targerServer = getServer(payload, null);
+                write(targerServer != null
+                        ? forward(targerServer, ByteBuffer.wrap(payload.getBytes(StandardCharsets.UTF_8)), 0, false, true)
+                        : FrameUtil.encode("Fail connect to server"));
+            }
+            return true;
+        }
+
+        private void handleBinaryRequest(ByteBuffer frame) throws IOException {
+            long requestId = BinaryCodec.getRequestId(frame);
+            if (BinaryCodec.getVersion(frame) != BinaryCodec.VERSION) {
+                write(BinaryCodec.encode(BinaryCodec.OP_ERROR, requestId, "Unsupported protocol version"));
+                return;
+            }
+            switch (BinaryCodec.getOpcode(frame)) {
+                case BinaryCodec.OP_LIST_SERVERS -> write(encodeServerList(requestId));
+                case BinaryCodec.OP_STATS -> write(BinaryCodec.encode(BinaryCodec.OP_RESPONSE, requestId, MetricsReport.toJson(serverRegistry)));
+                case BinaryCodec.OP_CONNECT -> {
+                    int payloadLength = BinaryCodec.getPayloadLength(frame);
+                    String protocol = payloadLength > 0
+                            ? BinaryCodec.protocolName(BinaryCodec.getPayloadByte(frame, 0)) : null;
+                    String key = payloadLength > 1
+                            ? BufferPool.toString(BinaryCodec.getPayload(frame).position(1)) : null;
+                    Backend targerServer = protocol != null ? getServer(protocol, key) : null;
+                    write(targerServer != null
+                            ? BinaryCodec.encodeInt(BinaryCodec.OP_RESPONSE, requestId, targerServer.getPort())
+                            : BinaryCodec.encode(BinaryCodec.OP_ERROR, requestId, "No Available use Server"));
+                }
+                case BinaryCodec.OP_FORWARD -> {
+                    if (backend == null) {
+                        write(BinaryCodec.encode(BinaryCodec.OP_ERROR, requestId, "Fail connect to server"));
+                        return;
+                    }
+                    Backend targerServer = getServer(backend.getProtocol(), null);
+                    write(targerServer != null
+                            ? forward(targerServer, BinaryCodec.getPayload(frame), requestId, false, true)
+                            : BinaryCodec.encode(BinaryCodec.OP_ERROR, requestId, "No Available use Server"));
+                }
+                case BinaryCodec.OP_REGISTER, BinaryCodec.OP_UNREGISTER, BinaryCodec.OP_SET_WEIGHT, BinaryCodec.OP_HEALTH_CHECK ->
+                        write(handleBinaryRegistration(frame));
+                default -> write(BinaryCodec.encode(BinaryCodec.OP_ERROR, requestId, "Unknown opcode"));
+            }
+        }
+
+        private boolean handleHttpRequest() throws IOException {
+            HttpParser request = decoder.getHttpParser();
+            boolean keepAlive = request.isKeepAlive();
+            Backend targerServer = getServer("http", null);
+            write(targerServer != null
+                    ? forward(targerServer, request.getMessage(), 0, request.isMethod("HEAD"), keepAlive)
+                    : HttpUtil.encodeResponse(503, "text/plain", "No Available use Server", keepAlive));
+            return keepAlive;
+        }
+
+        private Backend getServer(String protocol, String key) {
+            if (backend != null) {
+                if (!backend.isEjected() && serverRegistry.find(backend.getProtocol(), backend.getBackgroundPort()) == backend) {
+                    return backend;
+                }
+                // The session's backend was ejected or removed: pick again with its protocol and routing key.
+                protocol = backend.getProtocol();
+                key = routingKey;
+            }
+            if (key == null) {
+                key = BackendRouter.getClientAddress(channel);
+            }
+            Backend selected = router.select(protocol, key);
+            if (selected != backend) {
+                if (backend != null) {
+                    backend.onSessionUnbound();
+                }
+                if (selected != null) {
+                    selected.onSessionBound();
+                }
+            }
+            backend = selected;
+            routingKey = key;
+            return backend;
+        }
+
+        /**
+         * Runs one exchange and returns the client's response, or its error response if the backend failed.
+         */
+        private ByteBuffer forward(Backend server, ByteBuffer payload, long requestId, boolean head, boolean keepAlive) {
+            long start = System.nanoTime();
+            server.onRequestStart();
+            try {
+                ByteBuffer response = server.getProtocol().equals("udp")
+                        ? exchangeDatagram(server, payload, requestId)
+                        : exchangeStream(server, payload, requestId, head);
+                server.onRequestComplete(System.nanoTime() - start);
+                server.recordBytes(payload.remaining(), response.remaining());
+                outlierDetector.onSuccess(server);
+                return response;
+            } catch (IOException e) {
+                String reason = e instanceof SocketTimeoutException ? "Backend request timeout" : "Fail connect to server";
+                LoggingUtil.logAsync(Level.SEVERE,"Failed to Forward request: " + e.getMessage());
+                server.onRequestFailed();
+                outlierDetector.onFailure(server);
+                return encodeClientError(decoder, requestId, reason, keepAlive);
+            }
+        }
+
+        private ByteBuffer exchangeStream(Backend server, ByteBuffer payload, long requestId, boolean head) throws IOException {
+            boolean http = decoder.isHttp();
+            ConnectionPool pool = http && server.getHttpConnectionPool() != null ? server.getHttpConnectionPool() : server.getConnectionPool();
+            ByteBuffer request;
+            if (http) {
+                request = BufferPool.acquire(payload.remaining());
+                request.put(payload.duplicate()).flip();
+            } else {
+                request = FrameUtil.encode(payload.duplicate());
+            }
+            FrameDecoder responseDecoder = new FrameDecoder();
+            responseDecoder.getHttpParser().setResponseToHead(head);
+            try {
+                SocketChannel backendChannel = pool.acquire();
+                if (backendChannel != null) {
+                    try {
+                        return exchangeOn(backendChannel, pool, request, responseDecoder, requestId);
+                    } catch (IOException e) {
+                        if (!responseDecoder.isEmpty() || e instanceof SocketTimeoutException) {
+                            throw e;
+                        }
+                        // A pooled connection may have been closed by the backend while it was idle.
+                        request.rewind();
+                    }
+                }
+                backendChannel = SocketChannel.open();
+                try {
+                    backendChannel.socket().connect(pool.getAddress(), (int) CONNECT_TIMEOUT_MS);
+                } catch (IOException e) {
+                    backendChannel.close();
+                    throw e;
+                }
+                return exchangeOn(backendChannel, pool, request, responseDecoder, requestId);
+            } finally {
+                BufferPool.release(request);
+                responseDecoder.release();
+            }
+        }
+
+        private ByteBuffer exchangeOn(SocketChannel backendChannel, ConnectionPool pool, ByteBuffer request,
+                                      FrameDecoder responseDecoder, long requestId) throws IOException {
+            boolean reusable = false;
+            try {
+                backendChannel.configureBlocking(true);
+                backendChannel.socket().setSoTimeout((int) REQUEST_TIMEOUT_MS);
+                while (request.hasRemaining()) {
+                    backendChannel.write(request);
+                }
+                ReadableByteChannel input = new TimedInput(backendChannel.socket().getInputStream(), transferBuffer);
+                while (true) {
+                    boolean closed = responseDecoder.read(input) == -1;
+                    // An HTTP response without a length ends where the backend closes the connection.
+                    ByteBuffer response = closed ? responseDecoder.endOfStream() : responseDecoder.nextFrame();
+                    if (closed && response == null) {
+                        throw new IOException("Backend closed connection before responding");
+                    }
+                    while (response != null && responseDecoder.isHttp() && responseDecoder.getHttpParser().getStatus() / 100 == 1) {
+                        write(encodeClientResponse(decoder, requestId, response));
+                        response = responseDecoder.nextFrame();
+                    }
+                    if (response != null) {
+                        reusable = !closed && (!responseDecoder.isHttp() || responseDecoder.getHttpParser().isKeepAlive());
+                        return encodeClientResponse(decoder, requestId, response);
+                    }
+                }
+            } finally {
+                if (reusable) {
+                    pool.release(backendChannel);
+                } else {
+                    closeQuietly(backendChannel);
+                }
+            }
+        }
+
+        private ByteBuffer exchangeDatagram(Backend server, ByteBuffer payload, long requestId) throws IOException {
+            if (datagramChannel == null) {
+                datagramChannel = DatagramChannel.open();
+                datagramChannel.bind(null);
+                datagramChannel.socket().setSoTimeout((int) REQUEST_TIMEOUT_MS);
+                datagramBuffer = new byte[65536];
+            }
+            long correlationId = nextCorrelationId++;
+            InetSocketAddress address = server.getConnectionPool().getAddress();
+            ByteBuffer frame = BinaryCodec.encode(BinaryCodec.OP_FORWARD, correlationId, payload.duplicate());
+            try {
+                datagramChannel.send(frame, address);
+            } finally {
+                BufferPool.release(frame);
+            }
+            DatagramPacket packet = new DatagramPacket(datagramBuffer, datagramBuffer.length);
+            while (true) {
+                datagramChannel.socket().receive(packet);
+                ByteBuffer reply = ByteBuffer.wrap(datagramBuffer, 0, packet.getLength());
+                // Late replies to earlier, timed-out requests are skipped like in UdpForwarder.
+                if (reply.remaining() < BinaryCodec.HEADER_LENGTH || !BinaryCodec.isBinary(reply.get(0))
+                        || BinaryCodec.getRequestId(reply) != correlationId || !address.equals(packet.getSocketAddress())) {
+                    continue;
+                }
+                if (BinaryCodec.getOpcode(reply) != BinaryCodec.OP_RESPONSE) {
+                    throw new IOException(BufferPool.toString(BinaryCodec.getPayload(reply)));
+                }
+                return encodeClientResponse(decoder, requestId, BinaryCodec.getPayload(reply));
+            }
+        }
+
+        private void write(ByteBuffer frame) throws IOException {
+            try {
+                while (frame.hasRemaining()) {
+                    channel.write(frame);
+                }
+            } finally {
+                BufferPool.release(frame);
+            }
+        }
+
+        private void close() {
+            blockingClients.remove(channel);
+            if (backend != null) {
+                backend.onSessionUnbound();
+            }
+            closeQuietly(channel);
+            if (datagramChannel != null) {
+                closeQuietly(datagramChannel);
+            }
+            decoder.release();
+        }
+
+        private void closeQuietly(Channel closeable) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                LoggingUtil.logAsync(Level.WARNING,"Failed to close connection: " + e.getMessage());
+            }
         }
-        return result.toString();
     }
 
+    /**
+     * Reads a socket through its stream, which honours SO_TIMEOUT. Channels.newChannel would do the same but blocks
+     * inside a synchronized block, which pins a virtual thread to its carrier.
+     */
+    private record TimedInput(InputStream in, byte[] transfer) implements ReadableByteChannel {
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            int read = in.read(transfer, 0, Math.min(transfer.length, dst.remaining()));
+            if (read > 0) {
+                dst.put(transfer, 0, read);
+            }
+            return read;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
 }
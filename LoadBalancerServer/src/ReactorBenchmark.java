@@ -0,0 +1,90 @@
+import server.TCPServer;
+import util.ConfigUtil;
+import util.FrameUtil;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ReactorBenchmark {
+
+    private static final int CLIENT_THREADS = ConfigUtil.getInt("bench.clients", 64);
+    private static final int BACKENDS = ConfigUtil.getInt("bench.backends", 4);
+    private static final long DURATION_MS = ConfigUtil.getLong("bench.durationMs", 5000);
+
+    private static int nextClientPort = 20000;
+
+    public static void main(String[] args) throws Exception {
+        int maxWorkers = Runtime.getRuntime().availableProcessors();
+        System.out.println("Reactor scaling benchmark : " + CLIENT_THREADS + " clients, " + BACKENDS + " tcp backends, " + DURATION_MS + "ms per run");
+        System.out.println("workers\tconnections/sec\trequests/sec");
+        for (int workers = 1; workers <= maxWorkers; workers *= 2) {
+            runRound(workers);
+        }
+        if (Integer.highestOneBit(maxWorkers) != maxWorkers) {
+            runRound(maxWorkers);
+        }
+        System.exit(0);
+    }
+
+    private static void runRound(int workers) throws Exception {
+        System.setProperty("lb.workers", String.valueOf(workers));
+        BenchmarkTopology<TCPServer> topology = BenchmarkTopology.start(BACKENDS,
+                () -> TCPServer.TCPServerManager.createServerInstance(nextClientPort++));
+
+        double connectionsPerSecond = measure(ReactorBenchmark::connectOnce);
+        double requestsPerSecond = measure(ReactorBenchmark::requestLoop);
+        System.out.printf("%d\t%.0f\t%.0f%n", workers, connectionsPerSecond, requestsPerSecond);
+
+        topology.stop();
+    }
+
+    private static double measure(ClientTask task) throws InterruptedException {
+        LongAdder operations = new LongAdder();
+        CountDownLatch finished = new CountDownLatch(CLIENT_THREADS);
+        long deadline = System.currentTimeMillis() + DURATION_MS;
+        for (int i = 0; i < CLIENT_THREADS; i++) {
+            Thread clientThread = new Thread(() -> {
+                try {
+                    task.run(deadline, operations);
+                } catch (IOException e) {
+                    System.out.println("Client failed : " + e.getMessage());
+                } finally {
+                    finished.countDown();
+                }
+            });
+            clientThread.start();
+        }
+        finished.await();
+        return operations.sum() * 1000.0 / DURATION_MS;
+    }
+
+    private static void connectOnce(long deadline, LongAdder operations) throws IOException {
+        while (System.currentTimeMillis() < deadline) {
+            try (SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", 8080))) {
+                exchange(channel, "case : 2 - tcp");
+                operations.increment();
+            }
+        }
+    }
+
+    private static void requestLoop(long deadline, LongAdder operations) throws IOException {
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress("localhost", 8080))) {
+            exchange(channel, "case : 2 - tcp");
+            while (System.currentTimeMillis() < deadline) {
+                exchange(channel, "case : 3 - benchmark payload");
+                operations.increment();
+            }
+        }
+    }
+
+    private static void exchange(SocketChannel channel, String message) throws IOException {
+        FrameUtil.writeFrame(channel, message);
+        FrameUtil.readFrame(channel);
+    }
+
+    private interface ClientTask {
+        void run(long deadline, LongAdder operations) throws IOException;
+    }
+}
@@ -0,0 +1,87 @@
+import balancer.Backend;
+import balancer.LoadBalancingStrategy;
+import util.ConfigUtil;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares tail latency of the load balancing strategies against simulated backends of uneven speed.
+ * Each backend serves a fixed number of requests at a time; the rest queue, like a saturated TCPServer.
+ */
+public class StrategyBenchmark {
+
+    private static final int CLIENT_THREADS = ConfigUtil.getInt("bench.clients", 32);
+    private static final int REQUESTS_PER_CLIENT = ConfigUtil.getInt("bench.requests", 200);
+    private static final int BACKEND_CONCURRENCY = ConfigUtil.getInt("bench.backendConcurrency", 4);
+    private static final long[] SERVICE_TIME_MICROS = {1000, 1000, 1000, 5000};
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("Strategy benchmark : " + CLIENT_THREADS + " clients, backends with service time (us) " + Arrays.toString(SERVICE_TIME_MICROS));
+        System.out.println("strategy\t\tp50(ms)\tp99(ms)\tp99.9(ms)\tmax(ms)\trequests/sec");
+        for (String name : new String[]{"round-robin", "least-outstanding", "peak-ewma", "p2c"}) {
+            runRound(LoadBalancingStrategy.create(name));
+        }
+    }
+
+    private static void runRound(LoadBalancingStrategy strategy) throws InterruptedException {
+        Backend[] servers = new Backend[SERVICE_TIME_MICROS.length];
+        Semaphore[] capacity = new Semaphore[SERVICE_TIME_MICROS.length];
+        for (int i = 0; i < SERVICE_TIME_MICROS.length; i++) {
+            servers[i] = new Backend(null, null);
+            capacity[i] = new Semaphore(BACKEND_CONCURRENCY, true);
+        }
+        long[] latencies = new long[CLIENT_THREADS * REQUESTS_PER_CLIENT];
+        CountDownLatch finished = new CountDownLatch(CLIENT_THREADS);
+        long start = System.nanoTime();
+        for (int c = 0; c < CLIENT_THREADS; c++) {
+            int client = c;
+            new Thread(() -> {
+                try {
+                    for (int r = 0; r < REQUESTS_PER_CLIENT; r++) {
+                        long requestStart = System.nanoTime();
+                        Backend server = strategy.select(servers);
+                        int index = indexOf(servers, server);
+                        server.onRequestStart();
+                        capacity[index].acquire();
+                        try {
+                            long jitter = ThreadLocalRandom.current().nextLong(SERVICE_TIME_MICROS[index] / 5 + 1);
+                            TimeUnit.MICROSECONDS.sleep(SERVICE_TIME_MICROS[index] + jitter);
+                        } finally {
+                            capacity[index].release();
+                        }
+                        long latency = System.nanoTime() - requestStart;
+                        server.onRequestComplete(latency);
+                        latencies[client * REQUESTS_PER_CLIENT + r] = latency;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    finished.countDown();
+                }
+            }).start();
+        }
+        finished.await();
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+        Arrays.sort(latencies);
+        System.out.printf("%-18s\t%.2f\t%.2f\t%.2f\t\t%.2f\t%.0f%n", strategy.getName(),
+                percentile(latencies, 0.50), percentile(latencies, 0.99), percentile(latencies, 0.999),
+                latencies[latencies.length - 1] / 1e6, latencies.length / elapsedSeconds);
+    }
+
+    private static int indexOf(Backend[] servers, Backend server) {
+        for (int i = 0; i < servers.length; i++) {
+            if (servers[i] == server) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+}
@@ -0,0 +1,89 @@
+import server.UDPServer;
+import util.ConfigUtil;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+public class UdpBurstBenchmark {
+
+    private static final int CLIENT_THREADS = ConfigUtil.getInt("bench.clients", 4);
+    private static final long DURATION_MS = ConfigUtil.getLong("bench.durationMs", 3000);
+    private static final int DRAIN_BUDGET = ConfigUtil.getInt("bench.drainBudget", 64);
+    private static final int[] BURST_SIZES = {1, 16, 256};
+
+    private static int nextServerPort = 21000;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("UDP burst benchmark : " + CLIENT_THREADS + " clients through the proxy on port 8080, " + DURATION_MS + "ms per run");
+        System.out.println("drainBudget\tburst\tpackets/sec\tlost");
+        runRound(1);
+        runRound(DRAIN_BUDGET);
+        System.exit(0);
+    }
+
+    private static void runRound(int drainBudget) throws Exception {
+        // Both the balancer and the backend read their budget when constructed.
+        System.setProperty("lb.udp.drainBudget", String.valueOf(drainBudget));
+        System.setProperty("server.udp.drainBudget", String.valueOf(drainBudget));
+        BenchmarkTopology<UDPServer> topology = BenchmarkTopology.start(1,
+                () -> UDPServer.UDPServerManager.createServerInstance(nextServerPort++));
+        UDPServer udpServer = topology.getBackends().get(0);
+
+        for (int burst : BURST_SIZES) {
+            LongAdder replies = new LongAdder();
+            LongAdder lost = new LongAdder();
+            measure(burst, replies, lost);
+            System.out.printf("%d\t%d\t%.0f\t%d%n", drainBudget, burst, replies.sum() * 1000.0 / DURATION_MS, lost.sum());
+        }
+        System.out.println("backend drain : " + udpServer.getDrainCounter().getStats());
+
+        topology.stop();
+    }
+
+    private static void measure(int burst, LongAdder replies, LongAdder lost) throws InterruptedException {
+        CountDownLatch finished = new CountDownLatch(CLIENT_THREADS);
+        long deadline = System.currentTimeMillis() + DURATION_MS;
+        for (int i = 0; i < CLIENT_THREADS; i++) {
+            Thread clientThread = new Thread(() -> {
+                try {
+                    sendBursts(burst, deadline, replies, lost);
+                } catch (IOException e) {
+                    System.out.println("Client failed : " + e.getMessage());
+                } finally {
+                    finished.countDown();
+                }
+            });
+            clientThread.start();
+        }
+        finished.await();
+    }
+
+    private static void sendBursts(int burst, long deadline, LongAdder replies, LongAdder lost) throws IOException {
+        byte[] payload = "burst".getBytes(StandardCharsets.UTF_8);
+        try (DatagramSocket socket = new DatagramSocket()) {
+            socket.connect(new InetSocketAddress("localhost", 8080));
+            socket.setSoTimeout(1000);
+            DatagramPacket request = new DatagramPacket(payload, payload.length);
+            DatagramPacket reply = new DatagramPacket(new byte[1024], 1024);
+            while (System.currentTimeMillis() < deadline) {
+                for (int i = 0; i < burst; i++) {
+                    socket.send(request);
+                }
+                for (int i = 0; i < burst; i++) {
+                    try {
+                        socket.receive(reply);
+                        replies.increment();
+                    } catch (SocketTimeoutException e) {
+                        lost.add(burst - i);
+                        break;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package balancer;
+
+import util.BufferPool;
+import util.ConfigUtil;
+import util.FrameDecoder;
+import util.HttpParser;
+import util.HttpUtil;
+import util.LatencyHistogram;
+import util.LoggingUtil;
+import util.PrometheusWriter;
+import util.TimingWheel;
+import java.io.IOException;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+import java.util.logging.Level;
+
+/**
+ * Admin listener on its own selector thread, so scrapes never queue behind client traffic on port 8080.
+ * {@code GET /metrics} returns the registry, outlier state, traffic metrics and buffer usage in Prometheus text format.
+ * Render buffers are leased per response from a small free list and returned once the response is written, so
+ * scrapes cost no allocation once the buffers have grown, however many connections come and go.
+ * Anything but HTTP is closed as soon as its first byte arrives, and connections idle for {@code lb.admin.idleTimeoutMs} are closed.
+ */
+public class AdminServer implements Runnable {
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final long[] LATENCY_BOUNDS_NANOS = {
+            100_000L, 250_000L, 500_000L, 1_000_000L, 2_500_000L, 5_000_000L, 10_000_000L, 25_000_000L,
+            50_000_000L, 100_000_000L, 250_000_000L, 500_000_000L, 1_000_000_000L, 2_500_000_000L, 5_000_000_000L, 10_000_000_000L,
+    };
+    private static final String[] PROTOCOLS = {"tcp", "udp", "http"};
+    private static final Backend[] NO_SERVERS = new Backend[0];
+    private static final int MAX_FREE_RENDER_BUFFERS = 4;
+    private static final long IDLE_TIMEOUT_MS = ConfigUtil.getLong("lb.admin.idleTimeoutMs", 30000);
+
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final ServerRegistry registry;
+    private final List<BufferPoolMXBean> jvmBufferPools = ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class);
+    private final long[] bucketCounts = new long[LATENCY_BOUNDS_NANOS.length];
+    private final ArrayDeque<RenderBuffers> freeRenderBuffers = new ArrayDeque<>();
+    private final TimingWheel timers = new TimingWheel(ConfigUtil.getLong("lb.timer.tickMs", 10));
+    private volatile boolean running = true;
+
+    private AdminServer(Selector selector, ServerSocketChannel serverChannel, ServerRegistry registry) {
+        this.selector = selector;
+        this.serverChannel = serverChannel;
+        this.registry = registry;
+    }
+
+    public static AdminServer open(int port, ServerRegistry registry) throws IOException {
+        Selector selector = Selector.open();
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        try {
+            serverChannel.bind(new InetSocketAddress(port));
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            serverChannel.close();
+            selector.close();
+            throw e;
+        }
+        return new AdminServer(selector, serverChannel, registry);
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                selector.select(timers.getWaitMillis());
+                timers.advance();
+                Iterator<SelectionKey> keyIterator = selector.selectedKeys().iterator();
+                while (keyIterator.hasNext()) {
+                    SelectionKey key = keyIterator.next();
+                    keyIterator.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        handleConnection(key, (AdminConnection) key.attachment());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            LoggingUtil.logAsync(Level.SEVERE,"Error during admin listener operation: " + e.getMessage());
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof AdminConnection connection) {
+                    connection.close();
+                }
+            }
+            try {
+                serverChannel.close();
+                selector.close();
+            } catch (IOException e) {
+                LoggingUtil.logAsync(Level.WARNING,"Failed to close admin listener: " + e.getMessage());
+            }
+        }
+    }
+
+    public void close() {
+        running = false;
+        selector.wakeup();
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        AdminConnection connection = new AdminConnection(channel);
+        connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+        scheduleIdleTimeout(connection, IDLE_TIMEOUT_MS);
+    }
+
+    private void scheduleIdleTimeout(AdminConnection connection, long delayMillis) {
+        connection.idleTimeout = timers.schedule(TimingWheel.Kind.IDLE, delayMillis, () -> {
+            // Reads and writes only stamp the connection; the timer re-arms itself for the remaining idle time.
+            long idleMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - connection.lastActivityNanos);
+            if (idleMillis < IDLE_TIMEOUT_MS) {
+                scheduleIdleTimeout(connection, IDLE_TIMEOUT_MS - idleMillis);
+                return;
+            }
+            connection.close();
+        });
+    }
+
+    private void handleConnection(SelectionKey key, AdminConnection connection) {
+        connection.lastActivityNanos = System.nanoTime();
+        try {
+            if (key.isWritable()) {
+                if (!connection.flush()) {
+                    return;
+                }
+                if (connection.closeAfterResponse) {
+                    connection.close();
+                    return;
+                }
+                key.interestOps(SelectionKey.OP_READ);
+            } else if (connection.decoder.read(connection.channel) == -1) {
+                connection.close();
+                return;
+            }
+            if (connection.decoder.negotiate() && !connection.decoder.isHttp()) {
+                connection.close();
+                return;
+            }
+            // One response at a time: pipelined requests wait in the decoder until the previous one is written.
+            while (key.interestOps() == SelectionKey.OP_READ && connection.decoder.nextFrame() != null) {
+                respond(connection, connection.decoder.getHttpParser());
+                if (!connection.flush()) {
+                    key.interestOps(SelectionKey.OP_WRITE);
+                } else if (connection.closeAfterResponse) {
+                    connection.close();
+                    return;
+                }
+            }
+        } catch (IOException e) {
+            LoggingUtil.logAsync(Level.WARNING,"Closing admin connection: " + e.getMessage());
+            connection.close();
+        }
+    }
+
+    private void respond(AdminConnection connection, HttpParser request) {
+        boolean head = request.isMethod("HEAD");
+        boolean found = (head || request.isMethod("GET")) && isMetricsTarget(request.getTarget());
+        connection.closeAfterResponse = !request.isKeepAlive();
+        RenderBuffers buffers = freeRenderBuffers.isEmpty() ? new RenderBuffers() : freeRenderBuffers.pop();
+        connection.renderBuffers = buffers;
+        ByteBuffer body;
+        if (found) {
+            renderMetrics(buffers.body.reset());
+            body = buffers.body.flip();
+        } else {
+            body = buffers.body.reset().ascii("Not Found\n").flip();
+        }
+        int status = found ? 200 : 404;
+        buffers.head.reset().ascii("HTTP/1.1 ").number(status).ascii(" ").ascii(HttpUtil.getReasonPhrase(status))
+                .ascii("\r\nContent-Type: ").ascii(found ? CONTENT_TYPE : "text/plain")
+                .ascii("\r\nContent-Length: ").number(body.remaining())
+                .ascii(connection.closeAfterResponse ? "\r\nConnection: close\r\n\r\n" : "\r\nConnection: keep-alive\r\n\r\n");
+        connection.response[0] = buffers.head.flip();
+        connection.response[1] = head ? body.limit(0) : body;
+    }
+
+    private static boolean isMetricsTarget(String target) {
+        return target.equals("/metrics") || target.startsWith("/metrics?");
+    }
+
+    private void renderMetrics(PrometheusWriter out) {
+        Map<String, Backend[]> snapshot = registry.getSnapshot();
+
+        out.family("lb_backends", "gauge", "Registered backends per protocol.");
+        for (String protocol : PROTOCOLS) {
+            out.sample("lb_backends").label("protocol", protocol).value(snapshot.getOrDefault(protocol, NO_SERVERS).length);
+        }
+        backendFamily(out, snapshot, "lb_backend_up", "gauge", "1 while the backend takes traffic, 0 while it is ejected as an outlier.",
+                server -> server.isEjected() ? 0 : 1);
+        backendFamily(out, snapshot, "lb_backend_weight", "gauge", "Configured weight of the backend.", Backend::getWeight);
+        backendFamily(out, snapshot, "lb_backend_effective_weight", "gauge", "Weight in hundredths after slow-start ramping.",
+                Backend::getEffectiveWeight);
+        backendFamily(out, snapshot, "lb_backend_in_flight", "gauge", "Requests sent to the backend and not yet answered.",
+                Backend::getOutstandingRequests);
+        backendFamily(out, snapshot, "lb_backend_sessions", "gauge", "Client sessions bound to the backend.", Backend::getSessionCount);
+        backendFamily(out, snapshot, "lb_backend_requests_total", "counter", "Requests forwarded to the backend.",
+                server -> server.getMetrics().getRequestCount());
+        backendFamily(out, snapshot, "lb_backend_errors_total", "counter", "Requests to the backend that failed or timed out.",
+                server -> server.getMetrics().getFailureCount());
+        backendFamily(out, snapshot, "lb_backend_sent_bytes_total", "counter", "Request bytes written to the backend.",
+                server -> server.getMetrics().getBytesSent());
+        backendFamily(out, snapshot, "lb_backend_received_bytes_total", "counter", "Response bytes relayed from the backend.",
+                server -> server.getMetrics().getBytesReceived());
+
+        out.family("lb_backend_latency_seconds", "histogram", "Latency of successful requests per backend.");
+        for (Backend[] servers : snapshot.values()) {
+            for (Backend server : servers) {
+                histogram(out, "lb_backend_latency_seconds", server.getMetrics().getLatency(), server);
+            }
+        }
+
+        out.family("lb_protocol_requests_total", "counter", "Requests forwarded per protocol, including backends since removed.");
+        for (String protocol : PROTOCOLS) {
+            out.sample("lb_protocol_requests_total").label("protocol", protocol).value(TrafficMetrics.forProtocol(protocol).getRequestCount());
+        }
+        out.family("lb_protocol_errors_total", "counter", "Failed requests per protocol, including backends since removed.");
+        for (String protocol : PROTOCOLS) {
+            out.sample("lb_protocol_errors_total").label("protocol", protocol).value(TrafficMetrics.forProtocol(protocol).getFailureCount());
+        }
+        out.family("lb_protocol_latency_seconds", "histogram", "Latency of successful requests per protocol.");
+        for (String protocol : PROTOCOLS) {
+            histogram(out, "lb_protocol_latency_seconds", TrafficMetrics.forProtocol(protocol).getLatency(), protocol);
+        }
+
+        out.family("lb_sessions_live", "gauge", "Client sessions held by all worker loops.");
+        out.sample("lb_sessions_live").value(SessionTable.getLiveCount());
+        out.family("lb_buffer_pool_outstanding", "gauge", "Pooled buffers currently leased.");
+        out.sample("lb_buffer_pool_outstanding").value(BufferPool.getOutstandingCount());
+        out.family("lb_buffer_pool_slab_bytes", "gauge", "Direct memory carved into pooled buffers.");
+        out.sample("lb_buffer_pool_slab_bytes").value(BufferPool.getSlabBytes());
+        out.family("lb_buffer_pool_leases_total", "counter", "Buffers leased from the pool.");
+        out.sample("lb_buffer_pool_leases_total").value(BufferPool.getLeaseCount());
+
+        out.family("jvm_buffer_pool_used_bytes", "gauge", "Memory used by JVM buffer pools.");
+        for (BufferPoolMXBean pool : jvmBufferPools) {
+            out.sample("jvm_buffer_pool_used_bytes").label("pool", pool.getName()).value(pool.getMemoryUsed());
+        }
+        out.family("jvm_buffer_pool_capacity_bytes", "gauge", "Total capacity of the buffers in JVM buffer pools.");
+        for (BufferPoolMXBean pool : jvmBufferPools) {
+            out.sample("jvm_buffer_pool_capacity_bytes").label("pool", pool.getName()).value(pool.getTotalCapacity());
+        }
+        out.family("jvm_buffer_pool_buffers", "gauge", "Buffers in JVM buffer pools.");
+        for (BufferPoolMXBean pool : jvmBufferPools) {
+            out.sample("jvm_buffer_pool_buffers").label("pool", pool.getName()).value(pool.getCount());
+        }
+    }
+
+    private static void backendFamily(PrometheusWriter out, Map<String, Backend[]> snapshot, String name, String type, String help,
+                                      ToLongFunction<Backend> value) {
+        out.family(name, type, help);
+        for (Backend[] servers : snapshot.values()) {
+            for (Backend server : servers) {
+                backendLabels(out.sample(name), server).value(value.applyAsLong(server));
+            }
+        }
+    }
+
+    private static PrometheusWriter backendLabels(PrometheusWriter out, Backend server) {
+        return out.label("protocol", server.getProtocol()).label("port", server.getPort()).label("background_port", server.getBackgroundPort());
+    }
+
+    /**
+     * Writes one histogram's series; {@code owner} is the backend or the protocol name it belongs to.
+     */
+    private void histogram(PrometheusWriter out, String name, LatencyHistogram histogram, Object owner) {
+        long total = histogram.getCumulativeCounts(LATENCY_BOUNDS_NANOS, bucketCounts);
+        for (int i = 0; i < LATENCY_BOUNDS_NANOS.length; i++) {
+            histogramLabels(out.sample(name, "_bucket"), owner).secondsLabel("le", LATENCY_BOUNDS_NANOS[i]).value(bucketCounts[i]);
+        }
+        histogramLabels(out.sample(name, "_bucket"), owner).label("le", "+Inf").value(total);
+        histogramLabels(out.sample(name, "_sum"), owner).valueSeconds(histogram.getSumNanos());
+        histogramLabels(out.sample(name, "_count"), owner).value(total);
+    }
+
+    private static PrometheusWriter histogramLabels(PrometheusWriter out, Object owner) {
+        return owner instanceof Backend server ? backendLabels(out, server) : out.label("protocol", (String) owner);
+    }
+
+    private static final class RenderBuffers {
+
+        private final PrometheusWriter head = new PrometheusWriter(256);
+        private final PrometheusWriter body = new PrometheusWriter(16384);
+    }
+
+    private final class AdminConnection {
+
+        private final SocketChannel channel;
+        private final FrameDecoder decoder = new FrameDecoder();
+        private final ByteBuffer[] response = new ByteBuffer[2];
+        private RenderBuffers renderBuffers;
+        private SelectionKey key;
+        private TimingWheel.Timeout idleTimeout;
+        private long lastActivityNanos = System.nanoTime();
+        private boolean closeAfterResponse;
+
+        private AdminConnection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Writes as much of the pending response as the socket takes; returns true once it is all written.
+         */
+        private boolean flush() throws IOException {
+            if (response[0] == null) {
+                return true;
+            }
+            channel.write(response);
+            if (response[0].hasRemaining() || response[1].hasRemaining()) {
+                return false;
+            }
+            response[0] = null;
+            response[1] = null;
+            releaseRenderBuffers();
+            return true;
+        }
+
+        /**
+         * Hands the buffers of a written or abandoned response back to the free list.
+         */
+        private void releaseRenderBuffers() {
+            if (renderBuffers != null && freeRenderBuffers.size() < MAX_FREE_RENDER_BUFFERS) {
+                freeRenderBuffers.push(renderBuffers);
+            }
+            renderBuffers = null;
+        }
+
+        private void close() {
+            if (!channel.isOpen()) {
+                return;
+            }
+            if (key != null) {
+                key.cancel();
+            }
+            timers.cancel(idleTimeout);
+            releaseRenderBuffers();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LoggingUtil.logAsync(Level.WARNING,"Failed to close admin connection: " + e.getMessage());
+            }
+            decoder.release();
+        }
+    }
+}
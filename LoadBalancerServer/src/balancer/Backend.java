@@ -0,0 +1,265 @@
+package balancer;
+
+import server.Server;
+import util.ConfigUtil;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class Backend {
+
+    private static final long EWMA_DECAY_NANOS = TimeUnit.MILLISECONDS.toNanos(ConfigUtil.getLong("lb.ewma.decayMs", 10000));
+    private static final long FAILURE_PENALTY_NANOS = TimeUnit.MILLISECONDS.toNanos(ConfigUtil.getLong("lb.ewma.failurePenaltyMs", 1000));
+    private static final double UNMEASURED_PENALTY = Double.MAX_VALUE / 2;
+    private static final long SLOW_START_NANOS = TimeUnit.MILLISECONDS.toNanos(ConfigUtil.getLong("lb.slowStart.windowMs", 10000));
+    private static final double SLOW_START_MIN_FACTOR = ConfigUtil.getInt("lb.slowStart.minPercent", 10) / 100.0;
+    private static final int EFFECTIVE_WEIGHT_SCALE = 100;
+
+    private final Server server;
+    private final ConnectionPool connectionPool;
+    private final ConnectionPool httpConnectionPool;
+    private final AtomicInteger outstandingRequests = new AtomicInteger();
+    private final AtomicInteger sessions = new AtomicInteger();
+    private final TrafficMetrics metrics = new TrafficMetrics();
+    private final TrafficMetrics protocolMetrics;
+    private volatile int weight = 1;
+    private volatile int maxConnections = 0;
+    private double ewmaLatencyNanos;
+    private long lastSampleNanos = System.nanoTime();
+    private volatile long activatedAtNanos = System.nanoTime();
+    private volatile boolean slowStarting = false;
+
+    // Outlier ejection state; transitions are made by OutlierDetector under its lock.
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile boolean ejected;
+    private volatile boolean onProbation;
+    private long ejectedUntilNanos;
+    private long returnedAtNanos;
+    private int ejectionCount;
+
+    public Backend(Server server, ConnectionPool connectionPool) {
+        this(server, connectionPool, null);
+    }
+
+    /**
+     * A backend speaks one protocol per connection, so raw HTTP exchanges get their own pool
+     * next to the one carrying length-prefixed frames.
+     */
+    public Backend(Server server, ConnectionPool connectionPool, ConnectionPool httpConnectionPool) {
+        this.server = server;
+        this.connectionPool = connectionPool;
+        this.httpConnectionPool = httpConnectionPool;
+        // Simulated backends in benchmarks have no server and count only towards themselves.
+        this.protocolMetrics = server != null ? TrafficMetrics.forProtocol(server.getProtocol()) : new TrafficMetrics();
+    }
+
+    public Server getServer() {
+        return server;
+    }
+
+    public ConnectionPool getConnectionPool() {
+        return connectionPool;
+    }
+
+    public ConnectionPool getHttpConnectionPool() {
+        return httpConnectionPool;
+    }
+
+    public void invalidateConnectionPools() {
+        connectionPool.invalidate();
+        if (httpConnectionPool != null) {
+            httpConnectionPool.invalidate();
+        }
+    }
+
+    public String getProtocol() {
+        return server.getProtocol();
+    }
+
+    public int getPort() {
+        return server.getPort();
+    }
+
+    public int getBackgroundPort() {
+        return server.getBackgroundPort();
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    public void setWeight(int weight) {
+        if (weight < 1) {
+            throw new IllegalArgumentException("Weight must be positive: " + weight);
+        }
+        this.weight = weight;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        if (maxConnections < 0) {
+            throw new IllegalArgumentException("Max connections must not be negative: " + maxConnections);
+        }
+        this.maxConnections = maxConnections;
+    }
+
+    /**
+     * Starts the slow-start ramp; called when the backend becomes eligible for traffic.
+     */
+    public void activate() {
+        activatedAtNanos = System.nanoTime();
+        slowStarting = SLOW_START_NANOS > 0;
+    }
+
+    public boolean isSlowStarting() {
+        return slowStarting && System.nanoTime() - activatedAtNanos < SLOW_START_NANOS;
+    }
+
+    /**
+     * Share of full traffic this backend should take: ramps linearly from lb.slowStart.minPercent to 1
+     * over lb.slowStart.windowMs after activation.
+     */
+    public double getWarmupFactor() {
+        if (!slowStarting) {
+            return 1;
+        }
+        long elapsed = System.nanoTime() - activatedAtNanos;
+        if (elapsed >= SLOW_START_NANOS) {
+            slowStarting = false;
+            return 1;
+        }
+        return Math.max(SLOW_START_MIN_FACTOR, (double) elapsed / SLOW_START_NANOS);
+    }
+
+    /**
+     * Weight in hundredths, scaled down by the warm-up factor; strategies reduce these by their gcd.
+     */
+    public int getEffectiveWeight() {
+        return (int) Math.max(1, Math.round((double) weight * EFFECTIVE_WEIGHT_SCALE * getWarmupFactor()));
+    }
+
+    public boolean isSaturated() {
+        int limit = maxConnections;
+        return limit > 0 && outstandingRequests.get() >= limit;
+    }
+
+    public void onRequestStart() {
+        outstandingRequests.incrementAndGet();
+    }
+
+    public void onRequestComplete(long latencyNanos) {
+        outstandingRequests.decrementAndGet();
+        recordLatency(latencyNanos);
+        metrics.recordSuccess(latencyNanos);
+        protocolMetrics.recordSuccess(latencyNanos);
+    }
+
+    public void onRequestFailed() {
+        outstandingRequests.decrementAndGet();
+        recordLatency(FAILURE_PENALTY_NANOS);
+        metrics.recordFailure();
+        protocolMetrics.recordFailure();
+    }
+
+    public void recordBytes(long sent, long received) {
+        metrics.recordBytes(sent, received);
+        protocolMetrics.recordBytes(sent, received);
+    }
+
+    public TrafficMetrics getMetrics() {
+        return metrics;
+    }
+
+    public void onSessionBound() {
+        sessions.incrementAndGet();
+    }
+
+    public void onSessionUnbound() {
+        sessions.decrementAndGet();
+    }
+
+    public int getSessionCount() {
+        return sessions.get();
+    }
+
+    public boolean isEjected() {
+        return ejected;
+    }
+
+    boolean isOnProbation() {
+        return onProbation;
+    }
+
+    int recordFailure() {
+        return consecutiveFailures.incrementAndGet();
+    }
+
+    void recordSuccess() {
+        consecutiveFailures.set(0);
+    }
+
+    long getEjectedUntilNanos() {
+        return ejectedUntilNanos;
+    }
+
+    long getReturnedAtNanos() {
+        return returnedAtNanos;
+    }
+
+    int getEjectionCount() {
+        return ejectionCount;
+    }
+
+    void eject(long untilNanos) {
+        ejectedUntilNanos = untilNanos;
+        ejectionCount++;
+        onProbation = false;
+        ejected = true;
+    }
+
+    void readmit(long nowNanos) {
+        consecutiveFailures.set(0);
+        returnedAtNanos = nowNanos;
+        onProbation = true;
+        ejected = false;
+    }
+
+    void endProbation() {
+        onProbation = false;
+    }
+
+    void forgiveEjections() {
+        ejectionCount = 0;
+    }
+
+    public int getOutstandingRequests() {
+        return outstandingRequests.get();
+    }
+
+    public synchronized double getEwmaLatencyNanos() {
+        return ewmaLatencyNanos;
+    }
+
+    public double getLoadCost() {
+        int outstanding = outstandingRequests.get();
+        double latency = getEwmaLatencyNanos();
+        if (latency == 0 && outstanding > 0) {
+            return UNMEASURED_PENALTY + outstanding;
+        }
+        return latency * (outstanding + 1) / getWarmupFactor();
+    }
+
+    private synchronized void recordLatency(long latencyNanos) {
+        // Peak EWMA: jump straight to a slower sample, decay towards faster ones over time.
+        long now = System.nanoTime();
+        if (latencyNanos > ewmaLatencyNanos) {
+            ewmaLatencyNanos = latencyNanos;
+        } else {
+            double weight = Math.exp(-(double) (now - lastSampleNanos) / EWMA_DECAY_NANOS);
+            ewmaLatencyNanos = ewmaLatencyNanos * weight + latencyNanos * (1 - weight);
+        }
+        lastSampleNanos = now;
+    }
+}
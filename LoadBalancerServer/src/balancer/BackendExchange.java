@@ -0,0 +1,108 @@
+package balancer;
+
+import util.BufferPool;
+import util.FrameDecoder;
+import util.FrameUtil;
+import util.TimingWheel;
+import java.nio.ByteBuffer;
+
+public class BackendExchange {
+
+    private final ClientConnection client;
+    private final Backend backend;
+    private final long requestId;
+    private final boolean framed;
+    private long correlationId;
+    private final long startNanos = System.nanoTime();
+    private ByteBuffer request;
+    private FrameDecoder responseDecoder;
+    private boolean pooledConnection;
+    private TimingWheel.Timeout timeout;
+
+    public BackendExchange(ClientConnection client, Backend backend, ByteBuffer payload, boolean framed, long requestId) {
+        this.client = client;
+        this.backend = backend;
+        this.requestId = requestId;
+        this.framed = framed;
+        if (framed) {
+            this.request = FrameUtil.encode(payload);
+        } else {
+            this.request = BufferPool.acquire(payload.remaining());
+            this.request.put(payload).flip();
+        }
+    }
+
+    public ClientConnection getClient() {
+        return client;
+    }
+
+    public Backend getBackend() {
+        return backend;
+    }
+
+    /**
+     * The pool this exchange's connection comes from: raw HTTP requests never share a connection with framed ones.
+     */
+    public ConnectionPool getConnectionPool() {
+        if (!framed && backend.getHttpConnectionPool() != null) {
+            return backend.getHttpConnectionPool();
+        }
+        return backend.getConnectionPool();
+    }
+
+    public long getRequestId() {
+        return requestId;
+    }
+
+    public long getCorrelationId() {
+        return correlationId;
+    }
+
+    public void setCorrelationId(long correlationId) {
+        this.correlationId = correlationId;
+    }
+
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    public ByteBuffer getRequest() {
+        return request;
+    }
+
+    public FrameDecoder getResponseDecoder() {
+        if (responseDecoder == null) {
+            responseDecoder = new FrameDecoder();
+        }
+        return responseDecoder;
+    }
+
+    public boolean hasResponseBytes() {
+        return responseDecoder != null && !responseDecoder.isEmpty();
+    }
+
+    public boolean isPooledConnection() {
+        return pooledConnection;
+    }
+
+    public void setPooledConnection(boolean pooledConnection) {
+        this.pooledConnection = pooledConnection;
+    }
+
+    public TimingWheel.Timeout getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(TimingWheel.Timeout timeout) {
+        this.timeout = timeout;
+    }
+
+    public void release() {
+        BufferPool.release(request);
+        request = null;
+        if (responseDecoder != null) {
+            responseDecoder.release();
+            responseDecoder = null;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package balancer;
+
+import util.ConfigUtil;
+import util.LoggingUtil;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+/**
+ * Picks a backend for each client: sticky through the worker's session table, otherwise with the protocol's
+ * strategy over the backends the outlier detector leaves available.
+ * Shared by every worker; each worker passes in the session table it owns.
+ */
+public class BackendRouter {
+
+    private final OutlierDetector outlierDetector;
+    private final Map<String, LoadBalancingStrategy> strategies = new ConcurrentHashMap<>();
+
+    public BackendRouter(OutlierDetector outlierDetector) {
+        this.outlierDetector = outlierDetector;
+    }
+
+    public LoadBalancingStrategy getStrategy(String protocol) {
+        return strategies.computeIfAbsent(protocol, BackendRouter::createStrategy);
+    }
+
+    public Backend select(String protocol, String routingKey) {
+        Backend[] servers = outlierDetector.getAvailable(protocol);
+        if (servers.length == 0) {
+            LoggingUtil.logAsync(Level.SEVERE,"No Available use Server");
+            return null;
+        }
+        return getStrategy(protocol).select(servers, routingKey);
+    }
+
+    /**
+     * The client's session backend, or a newly selected one recorded as its session. A client bound to an ejected
+     * backend is moved, keeping its protocol and routing key; without a routing key the client address is used.
+     * A connection evicted from a full session table is handed to {@code onEvicted}, which owns closing it.
+     */
+    public Backend route(SessionTable sessions, ClientConnection connection, String protocol, String routingKey,
+                         Consumer<ClientConnection> onEvicted) {
+
+        ClientSession session = sessions.get(connection);
+        if (session != null) {
+            if (!session.getBackend().isEjected()) {
+                return session.getBackend();
+            }
+            protocol = session.getBackend().getProtocol();
+            routingKey = session.getRoutingKey();
+            sessions.remove(connection);
+        }
+        if (routingKey == null) {
+            routingKey = getClientAddress(connection.getChannel());
+        }
+        Backend selectedServer = select(protocol, routingKey);
+        if (selectedServer == null) {
+            return null;
+        }
+        ClientConnection evicted = sessions.put(connection, new ClientSession(selectedServer, routingKey));
+        if (evicted != null) {
+            LoggingUtil.logAsync(Level.WARNING,"Session table full, closing least recently used client connection.");
+            onEvicted.accept(evicted);
+        }
+        return selectedServer;
+    }
+
+    /**
+     * Rebinds the sessions of a removed backend: to a server now on the same port if there is one, otherwise
+     * spread with the protocol's strategy instead of piling them onto one server.
+     */
+    public void reassign(SessionTable sessions, Backend removed) {
+        Map<ClientConnection, ClientSession> affected = sessions.getSessions(removed);
+        if (affected.isEmpty()) {
+            return;
+        }
+        String protocol = removed.getProtocol();
+        Backend[] servers = outlierDetector.getAvailable(protocol);
+        Backend samePort = null;
+        for (Backend server : servers) {
+            if (server.getPort() == removed.getPort()) {
+                samePort = server;
+                break;
+            }
+        }
+        LoadBalancingStrategy strategy = getStrategy(protocol);
+        for (Map.Entry<ClientConnection, ClientSession> entry : affected.entrySet()) {
+            ClientSession session = entry.getValue();
+            Backend newServer = samePort != null ? samePort : strategy.select(servers, session.getRoutingKey());
+            if (newServer != null) {
+                sessions.rebind(entry.getKey(), session, newServer);
+            } else {
+                sessions.remove(entry.getKey());
+            }
+        }
+        LoggingUtil.logAsync(Level.INFO,"Reassigned " + affected.size() + " sessions from " + protocol + " Server " + removed.getPort());
+    }
+
+    public static String getClientAddress(SocketChannel clientChannel) {
+        if (clientChannel == null) {
+            return null;
+        }
+        try {
+            if (clientChannel.getRemoteAddress() instanceof InetSocketAddress address) {
+                return address.getAddress().getHostAddress();
+            }
+        } catch (IOException e) {
+            LoggingUtil.logAsync(Level.WARNING,"Failed to read client address: " + e.getMessage());
+        }
+        return null;
+    }
+
+    private static LoadBalancingStrategy createStrategy(String protocol) {
+        String name = ConfigUtil.getString("lb.strategy." + protocol, ConfigUtil.getString("lb.strategy", "weighted-round-robin"));
+        LoadBalancingStrategy strategy;
+        try {
+            strategy = LoadBalancingStrategy.create(name);
+        } catch (IllegalArgumentException e) {
+            LoggingUtil.logAsync(Level.SEVERE,e.getMessage() + ", falling back to round-robin");
+            strategy = LoadBalancingStrategy.create("round-robin");
+        }
+        LoggingUtil.logAsync(Level.INFO,"Using " + strategy.getName() + " load balancing for " + protocol + " servers");
+        return strategy;
+    }
+}
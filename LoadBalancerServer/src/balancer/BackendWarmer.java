@@ -0,0 +1,102 @@
+package balancer;
+
+import util.ConfigUtil;
+import util.FrameUtil;
+import util.LoggingUtil;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+
+/**
+ * Warms a newly registered backend before it is eligible for traffic: opens pooled connections and sends
+ * a few throwaway requests over them so the first real clients do not pay for a cold JIT or a TCP handshake.
+ * Runs off the event loops with blocking I/O bounded by lb.warmup.timeoutMs per request.
+ */
+public class BackendWarmer {
+
+    private static final int CONNECTIONS = ConfigUtil.getInt("lb.warmup.connections", 0);
+    private static final int REQUESTS = ConfigUtil.getInt("lb.warmup.requests", 0);
+    private static final int TIMEOUT_MS = ConfigUtil.getInt("lb.warmup.timeoutMs", 1000);
+    private static final String MESSAGE = ConfigUtil.getString("lb.warmup.message", "warmup");
+
+    public static boolean isEnabled() {
+        return CONNECTIONS > 0 || REQUESTS > 0;
+    }
+
+    /**
+     * Returns how many warm-up requests were answered.
+     */
+    public static int warmUp(Backend backend) {
+        if (backend.getProtocol().equals("udp")) {
+            return warmUpDatagrams(backend);
+        }
+        List<SocketChannel> channels = new ArrayList<>();
+        int answered = 0;
+        boolean reusable = CONNECTIONS > 0;
+        try {
+            for (int i = 0; i < Math.max(1, CONNECTIONS); i++) {
+                SocketChannel channel = SocketChannel.open(backend.getConnectionPool().getAddress());
+                channel.socket().setSoTimeout(TIMEOUT_MS);
+                channels.add(channel);
+            }
+            for (int i = 0; i < REQUESTS; i++) {
+                SocketChannel channel = channels.get(i % channels.size());
+                FrameUtil.writeFrame(channel, MESSAGE);
+                // The socket adaptor's stream honours SO_TIMEOUT; a plain channel read would block forever.
+                ReadableByteChannel timedInput = Channels.newChannel(channel.socket().getInputStream());
+                FrameUtil.readFrame(timedInput);
+                answered++;
+            }
+            for (SocketChannel channel : channels) {
+                channel.configureBlocking(false);
+            }
+        } catch (IOException e) {
+            // A late response would corrupt a pooled connection, so nothing from a failed warm-up is kept.
+            reusable = false;
+            LoggingUtil.logAsync(Level.WARNING,"Warm-up of " + backend.getProtocol() + " Server " + backend.getPort() + " stopped early: " + e.getMessage());
+        }
+        for (SocketChannel channel : channels) {
+            if (reusable) {
+                backend.getConnectionPool().release(channel);
+            } else {
+                closeQuietly(channel);
+            }
+        }
+        return answered;
+    }
+
+    private static int warmUpDatagrams(Backend backend) {
+        int answered = 0;
+        try (DatagramChannel channel = DatagramChannel.open()) {
+            channel.connect(backend.getConnectionPool().getAddress());
+            DatagramSocket socket = channel.socket();
+            socket.setSoTimeout(TIMEOUT_MS);
+            DatagramPacket packet = new DatagramPacket(new byte[1024], 1024);
+            for (int i = 0; i < REQUESTS; i++) {
+                channel.write(ByteBuffer.wrap(MESSAGE.getBytes(StandardCharsets.UTF_8)));
+                socket.receive(packet);
+                answered++;
+            }
+        } catch (IOException e) {
+            LoggingUtil.logAsync(Level.WARNING,"Warm-up of udp Server " + backend.getPort() + " stopped early: " + e.getMessage());
+        }
+        return answered;
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LoggingUtil.logAsync(Level.WARNING,"Failed to close warm-up connection: " + e.getMessage());
+        }
+    }
+}
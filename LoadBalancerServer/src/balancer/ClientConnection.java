@@ -0,0 +1,154 @@
+package balancer;
+
+import util.BufferPool;
+import util.FrameDecoder;
+import util.FrameUtil;
+import util.LoggingUtil;
+import util.TimingWheel;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.logging.Level;
+
+/**
+ * State of one client connection, owned by the worker loop the connection was assigned to.
+ * Requests are answered in order: while a backend exchange is in flight, later request frames are copied into {@code pendingRequests}.
+ */
+public class ClientConnection {
+
+    private final SocketChannel channel;
+    private final FrameDecoder decoder = new FrameDecoder();
+    private final ArrayDeque<ByteBuffer> pendingWrites = new ArrayDeque<>();
+    private final ArrayDeque<ByteBuffer> pendingRequests = new ArrayDeque<>();
+    private SelectionKey key;
+    private boolean exchangeInFlight = false;
+    private boolean closeAfterResponse = false;
+    private long lastActivityNanos = System.nanoTime();
+    private TimingWheel.Timeout idleTimeout;
+
+    public ClientConnection(SocketChannel channel) {
+        this.channel = channel;
+    }
+
+    public SocketChannel getChannel() {
+        return channel;
+    }
+
+    public FrameDecoder getDecoder() {
+        return decoder;
+    }
+
+    public ArrayDeque<ByteBuffer> getPendingRequests() {
+        return pendingRequests;
+    }
+
+    public boolean isBinary() {
+        return decoder.isBinary();
+    }
+
+    public boolean isHttp() {
+        return decoder.isHttp();
+    }
+
+    public void setKey(SelectionKey key) {
+        this.key = key;
+    }
+
+    public boolean isExchangeInFlight() {
+        return exchangeInFlight;
+    }
+
+    public void setExchangeInFlight(boolean exchangeInFlight) {
+        this.exchangeInFlight = exchangeInFlight;
+    }
+
+    public boolean isCloseAfterResponse() {
+        return closeAfterResponse;
+    }
+
+    /**
+     * Marks an HTTP connection whose current request asked for the connection to be closed once it is answered.
+     */
+    public void setCloseAfterResponse(boolean closeAfterResponse) {
+        this.closeAfterResponse = closeAfterResponse;
+    }
+
+    public boolean hasPendingWrites() {
+        return !pendingWrites.isEmpty();
+    }
+
+    public long getLastActivityNanos() {
+        return lastActivityNanos;
+    }
+
+    public void touch() {
+        lastActivityNanos = System.nanoTime();
+    }
+
+    public TimingWheel.Timeout getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout(TimingWheel.Timeout idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    public boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    public void send(String message) throws IOException {
+        send(FrameUtil.encode(message));
+    }
+
+    public void send(ByteBuffer frame) throws IOException {
+        if (!channel.isOpen()) {
+            BufferPool.release(frame);
+            return;
+        }
+        if (pendingWrites.isEmpty()) {
+            try {
+                channel.write(frame);
+            } catch (IOException e) {
+                BufferPool.release(frame);
+                throw e;
+            }
+            if (!frame.hasRemaining()) {
+                BufferPool.release(frame);
+                return;
+            }
+        }
+        pendingWrites.add(frame);
+        key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+    }
+
+    public void flush() throws IOException {
+        while (!pendingWrites.isEmpty()) {
+            ByteBuffer frame = pendingWrites.peekFirst();
+            channel.write(frame);
+            if (frame.hasRemaining()) {
+                return;
+            }
+            BufferPool.release(pendingWrites.pollFirst());
+        }
+        key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+    }
+
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LoggingUtil.logAsync(Level.SEVERE,"Failed to close client connection: " + e.getMessage());
+        }
+        decoder.release();
+        ByteBuffer frame;
+        while ((frame = pendingWrites.pollFirst()) != null) {
+            BufferPool.release(frame);
+        }
+        while ((frame = pendingRequests.pollFirst()) != null) {
+            BufferPool.release(frame);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package balancer;
+
+public class ClientSession {
+
+    private Backend backend;
+    private final String routingKey;
+
+    public ClientSession(Backend backend, String routingKey) {
+        this.backend = backend;
+        this.routingKey = routingKey;
+    }
+
+    public Backend getBackend() {
+        return backend;
+    }
+
+    void setBackend(Backend backend) {
+        this.backend = backend;
+    }
+
+    public String getRoutingKey() {
+        return routingKey;
+    }
+}
@@ -0,0 +1,118 @@
+package balancer;
+
+import util.LoggingUtil;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+/**
+ * Keep-alive TCP connections to one backend.
+ * Connections above {@code maxSize} are still handed out, but are closed instead of pooled on release.
+ */
+public class ConnectionPool {
+
+    private final InetSocketAddress address;
+    private final int minIdle;
+    private final int maxSize;
+    private final long idleTimeoutMs;
+    private final ConcurrentLinkedDeque<IdleConnection> idleConnections = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+    private volatile boolean invalidated = false;
+
+    public ConnectionPool(InetSocketAddress address, int minIdle, int maxSize, long idleTimeoutMs) {
+        this.address = address;
+        this.minIdle = Math.min(minIdle, maxSize);
+        this.maxSize = maxSize;
+        this.idleTimeoutMs = idleTimeoutMs;
+    }
+
+    public InetSocketAddress getAddress() {
+        return address;
+    }
+
+    public SocketChannel acquire() {
+        IdleConnection connection;
+        while ((connection = idleConnections.pollFirst()) != null) {
+            idleCount.decrementAndGet();
+            if (connection.channel.isOpen()) {
+                return connection.channel;
+            }
+        }
+        return null;
+    }
+
+    public void release(SocketChannel channel) {
+        if (invalidated || !channel.isOpen()) {
+            closeQuietly(channel);
+            return;
+        }
+        if (idleCount.incrementAndGet() > maxSize) {
+            idleCount.decrementAndGet();
+            closeQuietly(channel);
+            return;
+        }
+        idleConnections.offerFirst(new IdleConnection(channel, System.currentTimeMillis()));
+        if (invalidated) {
+            closeIdleConnections();
+        }
+    }
+
+    public void evictIdle() {
+        long expiredBefore = System.currentTimeMillis() - idleTimeoutMs;
+        Iterator<IdleConnection> iterator = idleConnections.descendingIterator();
+        while (iterator.hasNext() && idleCount.get() > minIdle) {
+            IdleConnection connection = iterator.next();
+            if (connection.lastUsed < expiredBefore || !connection.channel.isOpen()) {
+                if (idleConnections.removeFirstOccurrence(connection)) {
+                    idleCount.decrementAndGet();
+                    closeQuietly(connection.channel);
+                }
+            }
+        }
+    }
+
+    public void fillMinIdle() {
+        while (!invalidated && idleCount.get() < minIdle) {
+            try {
+                SocketChannel channel = SocketChannel.open(address);
+                channel.configureBlocking(false);
+                release(channel);
+            } catch (IOException e) {
+                LoggingUtil.logAsync(Level.WARNING,"Failed to pre-open connection to " + address + " : " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    public void invalidate() {
+        invalidated = true;
+        closeIdleConnections();
+    }
+
+    private void closeIdleConnections() {
+        IdleConnection connection;
+        while ((connection = idleConnections.pollFirst()) != null) {
+            idleCount.decrementAndGet();
+            closeQuietly(connection.channel);
+        }
+    }
+
+    public int getIdleCount() {
+        return idleCount.get();
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LoggingUtil.logAsync(Level.WARNING,"Failed to close pooled connection: " + e.getMessage());
+        }
+    }
+
+    private record IdleConnection(SocketChannel channel, long lastUsed) {
+    }
+}
@@ -0,0 +1,134 @@
+package balancer;
+
+import util.BufferPool;
+import util.LoggingUtil;
+import util.MessageUtil;
+import util.TimingWheel;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+
+/**
+ * Probes every backend concurrently from one non-blocking UDP socket.
+ * Each hello carries a sequence id that the backend echoes back, so a round lasts as long as the slowest reply
+ * or the probe deadline, and late replies from an earlier round are ignored.
+ * Not thread-safe: rounds must not overlap.
+ */
+public class HealthChecker implements Closeable {
+
+    private final DatagramChannel channel;
+    private final Selector selector;
+    private final TimingWheel timers;
+    private final long timeoutMillis;
+    private final Map<Long, Probe> probes = new HashMap<>();
+    private long nextSeq = 1;
+
+    public HealthChecker(long timeoutMillis, long tickMillis) throws IOException {
+        this.timeoutMillis = timeoutMillis;
+        this.timers = new TimingWheel(tickMillis);
+        this.selector = Selector.open();
+        this.channel = DatagramChannel.open();
+        channel.bind(null);
+        channel.configureBlocking(false);
+        channel.register(selector, SelectionKey.OP_READ);
+    }
+
+    /**
+     * Runs one probe round and returns the backends that answered before their deadline.
+     */
+    public Set<Backend> check(Collection<Backend> backends) throws IOException {
+        Set<Backend> healthy = new HashSet<>();
+        probes.clear();
+        for (Backend backend : backends) {
+            long seq = nextSeq++;
+            Probe probe = new Probe(backend);
+            ByteBuffer hello = ByteBuffer.wrap(MessageUtil.getHealthCheckMessage(seq).getBytes(StandardCharsets.UTF_8));
+            try {
+                channel.send(hello, probe.address);
+            } catch (IOException e) {
+                LoggingUtil.logAsync(Level.WARNING,"Failed to send health check to " + backend.getProtocol() + " Server " + backend.getPort() + " : " + e.getMessage());
+                continue;
+            }
+            probe.timeout = timers.schedule(TimingWheel.Kind.HEALTH_PROBE, timeoutMillis, () -> probes.remove(seq));
+            probes.put(seq, probe);
+        }
+
+        ByteBuffer buffer = BufferPool.acquire(1024);
+        try {
+            while (!probes.isEmpty()) {
+                selector.select(timers.getWaitMillis());
+                selector.selectedKeys().clear();
+                SocketAddress address;
+                while ((address = receive(buffer)) != null) {
+                    Probe probe = match(BufferPool.toString(buffer), address);
+                    if (probe != null) {
+                        timers.cancel(probe.timeout);
+                        healthy.add(probe.backend);
+                    }
+                }
+                timers.advance();
+            }
+        } finally {
+            BufferPool.release(buffer);
+        }
+        return healthy;
+    }
+
+    private SocketAddress receive(ByteBuffer buffer) throws IOException {
+        buffer.clear();
+        SocketAddress address = channel.receive(buffer);
+        buffer.flip();
+        return address;
+    }
+
+    private Probe match(String reply, SocketAddress address) {
+        if (!MessageUtil.isHealthCheckAwkMessage(reply)) {
+            return null;
+        }
+        long seq = MessageUtil.getHealthCheckSeq(reply);
+        if (seq >= 0) {
+            return probes.remove(seq);
+        }
+        // Backends that predate sequence ids are matched by their source address instead.
+        Iterator<Probe> iterator = probes.values().iterator();
+        while (iterator.hasNext()) {
+            Probe probe = iterator.next();
+            if (address instanceof InetSocketAddress source && source.getPort() == probe.address.getPort()) {
+                iterator.remove();
+                return probe;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        selector.close();
+        channel.close();
+    }
+
+    private static final class Probe {
+
+        private final Backend backend;
+        private final InetSocketAddress address;
+        private TimingWheel.Timeout timeout;
+
+        private Probe(Backend backend) {
+            this.backend = backend;
+            this.address = backend.getConnectionPool().getAddress();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package balancer;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+public class LeastOutstandingStrategy implements LoadBalancingStrategy {
+
+    @Override
+    public Backend select(Backend[] servers) {
+        int size = servers.length;
+        if (size == 0) {
+            return null;
+        }
+        // Start the scan at a random offset so ties do not always land on the first server.
+        int offset = ThreadLocalRandom.current().nextInt(size);
+        Backend selected = null;
+        double lowest = Double.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            Backend server = servers[(offset + i) % size];
+            // A slow-starting server looks busier than it is, so it takes a smaller share.
+            double load = (server.getOutstandingRequests() + 1) / server.getWarmupFactor();
+            if (load < lowest) {
+                lowest = load;
+                selected = server;
+            }
+        }
+        return selected;
+    }
+
+    @Override
+    public String getName() {
+        return "least-outstanding";
+    }
+}
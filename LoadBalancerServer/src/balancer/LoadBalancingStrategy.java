@@ -0,0 +1,24 @@
+package balancer;
+
+public interface LoadBalancingStrategy {
+
+    Backend select(Backend[] servers);
+
+    default Backend select(Backend[] servers, String routingKey) {
+        return select(servers);
+    }
+
+    String getName();
+
+    static LoadBalancingStrategy create(String name) {
+        return switch (name) {
+            case "round-robin" -> new RoundRobinStrategy();
+            case "weighted-round-robin" -> new WeightedRoundRobinStrategy();
+            case "least-outstanding" -> new LeastOutstandingStrategy();
+            case "peak-ewma" -> new PeakEwmaStrategy();
+            case "p2c" -> new PowerOfTwoChoicesStrategy();
+            case "maglev" -> new MaglevStrategy();
+            default -> throw new IllegalArgumentException("Unknown load balancing strategy: " + name);
+        };
+    }
+}
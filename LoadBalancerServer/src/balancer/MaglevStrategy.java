@@ -0,0 +1,66 @@
+package balancer;
+
+import util.ConfigUtil;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Sticky routing by consistent hashing of a client routing key.
+ * The lookup table is rebuilt only when the registry publishes a new server snapshot.
+ */
+public class MaglevStrategy implements LoadBalancingStrategy {
+
+    private static final int TABLE_SIZE = ConfigUtil.getInt("lb.maglev.tableSize", 65537);
+    private static final long KEY_SEED = 0x5851F42D4C957F2DL;
+
+    private volatile Table table;
+
+    @Override
+    public Backend select(Backend[] servers) {
+        if (servers.length == 0) {
+            return null;
+        }
+        return servers[ThreadLocalRandom.current().nextInt(servers.length)];
+    }
+
+    @Override
+    public Backend select(Backend[] servers, String routingKey) {
+        if (servers.length == 0) {
+            return null;
+        }
+        if (routingKey == null) {
+            return select(servers);
+        }
+        Table current = table;
+        if (current == null || current.servers != servers) {
+            current = rebuild(servers);
+        }
+        return current.servers[current.maglev.lookup(MaglevTable.hash(routingKey, KEY_SEED))];
+    }
+
+    @Override
+    public String getName() {
+        return "maglev";
+    }
+
+    private synchronized Table rebuild(Backend[] servers) {
+        if (table == null || table.servers != servers) {
+            table = new Table(servers);
+        }
+        return table;
+    }
+
+    private static class Table {
+
+        private final Backend[] servers;
+        private final MaglevTable maglev;
+
+        private Table(Backend[] servers) {
+            String[] names = new String[servers.length];
+            for (int i = 0; i < servers.length; i++) {
+                names[i] = servers[i].getProtocol() + ":" + servers[i].getPort() + ":" + servers[i].getBackgroundPort();
+            }
+            this.servers = servers;
+            this.maglev = new MaglevTable(names, TABLE_SIZE);
+        }
+    }
+}
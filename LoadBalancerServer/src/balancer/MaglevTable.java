@@ -0,0 +1,97 @@
+package balancer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Maglev consistent-hash lookup table (Eisenbud et al., NSDI 2016).
+ * Every backend fills the table in the order of its own permutation, so removing one backend
+ * only moves the slots it owned and lookups are a single array read.
+ */
+public class MaglevTable {
+
+    private static final long OFFSET_SEED = 0x9E3779B97F4A7C15L;
+    private static final long SKIP_SEED = 0xC2B2AE3D27D4EB4FL;
+
+    private final int[] lookup;
+
+    public MaglevTable(String[] names, int minimumSize) {
+        // Grow along a fixed prime ladder so the table size, and with it every slot, stays put as backends come and go.
+        int size = nextPrime(minimumSize);
+        while (size < names.length * 100L) {
+            size = nextPrime(size * 2);
+        }
+        lookup = new int[size];
+        Arrays.fill(lookup, -1);
+        if (names.length == 0) {
+            return;
+        }
+        long[] position = new long[names.length];
+        long[] skip = new long[names.length];
+        for (int i = 0; i < names.length; i++) {
+            position[i] = Long.remainderUnsigned(hash(names[i], OFFSET_SEED), size);
+            skip[i] = Long.remainderUnsigned(hash(names[i], SKIP_SEED), size - 1) + 1;
+        }
+        int filled = 0;
+        while (true) {
+            for (int i = 0; i < names.length; i++) {
+                int slot = (int) position[i];
+                while (lookup[slot] >= 0) {
+                    slot = (int) ((slot + skip[i]) % size);
+                }
+                lookup[slot] = i;
+                position[i] = (slot + skip[i]) % size;
+                if (++filled == size) {
+                    return;
+                }
+            }
+        }
+    }
+
+    public int lookup(long keyHash) {
+        return lookup[(int) Long.remainderUnsigned(keyHash, lookup.length)];
+    }
+
+    public int getSize() {
+        return lookup.length;
+    }
+
+    public int getSlot(int index) {
+        return lookup[index];
+    }
+
+    public static long hash(String value, long seed) {
+        // FNV-1a over the UTF-8 bytes, finished with the MurmurHash3 fmix64 avalanche step.
+        long hash = 0xCBF29CE484222325L ^ seed;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001B3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static int nextPrime(int value) {
+        int candidate = Math.max(value, 2);
+        while (!isPrime(candidate)) {
+            candidate++;
+        }
+        return candidate;
+    }
+
+    private static boolean isPrime(int value) {
+        if (value % 2 == 0) {
+            return value == 2;
+        }
+        for (int divisor = 3; (long) divisor * divisor <= value; divisor += 2) {
+            if (value % divisor == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,58 @@
+package balancer;
+
+import java.util.Map;
+
+/**
+ * Renders the traffic metrics of every protocol and registered backend as one JSON document.
+ * Built straight into a StringBuilder from the counters and the registry snapshot, without locking the forwarding path.
+ */
+public class MetricsReport {
+
+    private static final String[] PROTOCOLS = {"tcp", "udp", "http"};
+    private static final Backend[] NO_SERVERS = new Backend[0];
+
+    public static String toJson(ServerRegistry registry) {
+        Map<String, Backend[]> snapshot = registry.getSnapshot();
+        StringBuilder json = new StringBuilder(512);
+        json.append("{\"timestampMs\":").append(System.currentTimeMillis())
+                .append(",\"liveSessions\":").append(SessionTable.getLiveCount())
+                .append(",\"protocols\":{");
+        for (int i = 0; i < PROTOCOLS.length; i++) {
+            Backend[] servers = snapshot.getOrDefault(PROTOCOLS[i], NO_SERVERS);
+            int inFlight = 0;
+            int sessions = 0;
+            for (Backend server : servers) {
+                inFlight += server.getOutstandingRequests();
+                sessions += server.getSessionCount();
+            }
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append('"').append(PROTOCOLS[i]).append("\":{\"servers\":").append(servers.length)
+                    .append(",\"inFlight\":").append(inFlight)
+                    .append(",\"sessions\":").append(sessions).append(',');
+            TrafficMetrics.forProtocol(PROTOCOLS[i]).appendJson(json);
+            json.append('}');
+        }
+        json.append("},\"servers\":[");
+        boolean first = true;
+        for (Backend[] servers : snapshot.values()) {
+            for (Backend server : servers) {
+                if (!first) {
+                    json.append(',');
+                }
+                first = false;
+                json.append("{\"protocol\":\"").append(server.getProtocol())
+                        .append("\",\"port\":").append(server.getPort())
+                        .append(",\"backgroundPort\":").append(server.getBackgroundPort())
+                        .append(",\"weight\":").append(server.getWeight())
+                        .append(",\"ejected\":").append(server.isEjected())
+                        .append(",\"inFlight\":").append(server.getOutstandingRequests())
+                        .append(",\"sessions\":").append(server.getSessionCount()).append(',');
+                server.getMetrics().appendJson(json);
+                json.append('}');
+            }
+        }
+        return json.append("]}").toString();
+    }
+}
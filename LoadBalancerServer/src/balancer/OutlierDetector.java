@@ -0,0 +1,175 @@
+package balancer;
+
+import util.ConfigUtil;
+import util.LoggingUtil;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
+/**
+ * Passive health checking from live traffic.
+ * A backend that fails several requests in a row, or whose latency is far above the rest of its pool, is ejected
+ * for an exponentially growing period. When the period ends it returns on probation: one more failure ejects it again.
+ * No more than {@code lb.outlier.maxEjectionPercent} of a pool is ever ejected at once.
+ */
+public class OutlierDetector {
+
+    private static final int CONSECUTIVE_FAILURES = ConfigUtil.getInt("lb.outlier.consecutiveFailures", 5);
+    private static final long BASE_EJECTION_NANOS = TimeUnit.MILLISECONDS.toNanos(ConfigUtil.getLong("lb.outlier.baseEjectionMs", 10000));
+    private static final long MAX_EJECTION_NANOS = TimeUnit.MILLISECONDS.toNanos(ConfigUtil.getLong("lb.outlier.maxEjectionMs", 300000));
+    private static final int MAX_EJECTION_PERCENT = ConfigUtil.getInt("lb.outlier.maxEjectionPercent", 50);
+    private static final int LATENCY_FACTOR = ConfigUtil.getInt("lb.outlier.latencyFactor", 5);
+    private static final long MIN_OUTLIER_LATENCY_NANOS = TimeUnit.MILLISECONDS.toNanos(ConfigUtil.getLong("lb.outlier.minLatencyMs", 100));
+    private static final int MIN_LATENCY_POOL = 3;
+
+    private static final LongAdder ejections = new LongAdder();
+    private static final LongAdder readmissions = new LongAdder();
+    private static final LongAdder ejectionsRefused = new LongAdder();
+
+    private final ServerRegistry registry;
+    private final Set<Backend> ejectedBackends = ConcurrentHashMap.newKeySet();
+    private final Map<String, Available> available = new ConcurrentHashMap<>();
+    private volatile long nextReadmitNanos = Long.MAX_VALUE;
+    private volatile int version = 0;
+
+    public OutlierDetector(ServerRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * The protocol's registered backends minus the ejected ones.
+     * Returns the registry snapshot itself while nothing is ejected, and a cached filtered copy otherwise,
+     * so strategies that cache per snapshot only rebuild when ejection state changes.
+     */
+    public Backend[] getAvailable(String protocol) {
+        Backend[] servers = registry.getServers(protocol);
+        if (ejectedBackends.isEmpty()) {
+            return servers;
+        }
+        if (System.nanoTime() >= nextReadmitNanos) {
+            readmitExpired();
+        }
+        int currentVersion = version;
+        Available cached = available.get(protocol);
+        if (cached != null && cached.source == servers && cached.version == currentVersion) {
+            return cached.servers;
+        }
+        Backend[] filtered = Arrays.stream(servers).filter(server -> !server.isEjected()).toArray(Backend[]::new);
+        if (filtered.length == servers.length) {
+            filtered = servers;
+        }
+        available.put(protocol, new Available(servers, currentVersion, filtered));
+        return filtered;
+    }
+
+    public void onSuccess(Backend backend) {
+        backend.recordSuccess();
+        if (backend.isOnProbation()) {
+            synchronized (this) {
+                backend.endProbation();
+            }
+        }
+    }
+
+    public void onFailure(Backend backend) {
+        int failures = backend.recordFailure();
+        if (backend.isOnProbation() || failures >= CONSECUTIVE_FAILURES) {
+            eject(backend, failures + " consecutive failures");
+        }
+    }
+
+    /**
+     * Ejects backends whose peak EWMA latency is {@code lb.outlier.latencyFactor} times the median of their pool.
+     */
+    public void detectLatencyOutliers() {
+        for (Backend[] servers : registry.getSnapshot().values()) {
+            List<Backend> measured = new ArrayList<>();
+            for (Backend server : servers) {
+                if (!server.isEjected() && server.getEwmaLatencyNanos() > 0) {
+                    measured.add(server);
+                }
+            }
+            if (measured.size() < MIN_LATENCY_POOL) {
+                continue;
+            }
+            double[] latencies = measured.stream().mapToDouble(Backend::getEwmaLatencyNanos).sorted().toArray();
+            double median = latencies[latencies.length / 2];
+            double threshold = Math.max(median * LATENCY_FACTOR, MIN_OUTLIER_LATENCY_NANOS);
+            for (Backend server : measured) {
+                double latency = server.getEwmaLatencyNanos();
+                if (latency > threshold) {
+                    eject(server, String.format("latency %.1fms against pool median %.1fms", latency / 1e6, median / 1e6));
+                }
+            }
+        }
+    }
+
+    public int getEjectedCount() {
+        if (System.nanoTime() >= nextReadmitNanos) {
+            readmitExpired();
+        }
+        return ejectedBackends.size();
+    }
+
+    public static String getStats() {
+        return "ejections=" + ejections.sum() + " readmitted=" + readmissions.sum() + " refused=" + ejectionsRefused.sum();
+    }
+
+    private synchronized void eject(Backend backend, String reason) {
+        if (backend.isEjected()) {
+            return;
+        }
+        Backend[] pool = registry.getServers(backend.getProtocol());
+        int ejectedInPool = 0;
+        for (Backend server : pool) {
+            if (server.isEjected()) {
+                ejectedInPool++;
+            }
+        }
+        if ((ejectedInPool + 1) * 100L > (long) pool.length * MAX_EJECTION_PERCENT) {
+            ejectionsRefused.increment();
+            return;
+        }
+        long now = System.nanoTime();
+        if (backend.getEjectionCount() > 0 && now - backend.getReturnedAtNanos() > MAX_EJECTION_NANOS) {
+            backend.forgiveEjections();
+        }
+        long duration = Math.min(MAX_EJECTION_NANOS, BASE_EJECTION_NANOS << Math.min(backend.getEjectionCount(), 20));
+        backend.eject(now + duration);
+        ejectedBackends.add(backend);
+        nextReadmitNanos = Math.min(nextReadmitNanos, now + duration);
+        version++;
+        ejections.increment();
+        LoggingUtil.logAsync(Level.WARNING,"Ejecting " + backend.getProtocol() + " Server " + backend.getPort()
+                + " for " + TimeUnit.NANOSECONDS.toMillis(duration) + "ms after " + reason);
+    }
+
+    private synchronized void readmitExpired() {
+        long now = System.nanoTime();
+        long next = Long.MAX_VALUE;
+        Iterator<Backend> iterator = ejectedBackends.iterator();
+        while (iterator.hasNext()) {
+            Backend backend = iterator.next();
+            if (backend.getEjectedUntilNanos() <= now) {
+                iterator.remove();
+                backend.readmit(now);
+                readmissions.increment();
+                LoggingUtil.logAsync(Level.INFO,"Readmitting " + backend.getProtocol() + " Server " + backend.getPort() + " on probation");
+            } else {
+                next = Math.min(next, backend.getEjectedUntilNanos());
+            }
+        }
+        nextReadmitNanos = next;
+        version++;
+    }
+
+    private record Available(Backend[] source, int version, Backend[] servers) {
+    }
+}
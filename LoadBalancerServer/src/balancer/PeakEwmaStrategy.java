@@ -0,0 +1,34 @@
+package balancer;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Picks the server with the lowest peak-EWMA latency weighted by its outstanding requests.
+ */
+public class PeakEwmaStrategy implements LoadBalancingStrategy {
+
+    @Override
+    public Backend select(Backend[] servers) {
+        int size = servers.length;
+        if (size == 0) {
+            return null;
+        }
+        int offset = ThreadLocalRandom.current().nextInt(size);
+        Backend selected = null;
+        double lowest = Double.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            Backend server = servers[(offset + i) % size];
+            double cost = server.getLoadCost();
+            if (cost < lowest) {
+                lowest = cost;
+                selected = server;
+            }
+        }
+        return selected;
+    }
+
+    @Override
+    public String getName() {
+        return "peak-ewma";
+    }
+}
@@ -0,0 +1,35 @@
+package balancer;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+public class PowerOfTwoChoicesStrategy implements LoadBalancingStrategy {
+
+    @Override
+    public Backend select(Backend[] servers) {
+        int size = servers.length;
+        if (size == 0) {
+            return null;
+        }
+        if (size == 1) {
+            return servers[0];
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        int second = random.nextInt(size - 1);
+        if (second >= first) {
+            second++;
+        }
+        Backend a = servers[first];
+        Backend b = servers[second];
+        return load(a) <= load(b) ? a : b;
+    }
+
+    @Override
+    public String getName() {
+        return "p2c";
+    }
+
+    private static double load(Backend server) {
+        return (server.getOutstandingRequests() + 1) / server.getWarmupFactor();
+    }
+}
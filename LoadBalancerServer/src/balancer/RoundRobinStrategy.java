@@ -0,0 +1,21 @@
+package balancer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RoundRobinStrategy implements LoadBalancingStrategy {
+
+    private final AtomicInteger index = new AtomicInteger();
+
+    @Override
+    public Backend select(Backend[] servers) {
+        if (servers.length == 0) {
+            return null;
+        }
+        return servers[Math.floorMod(index.getAndIncrement(), servers.length)];
+    }
+
+    @Override
+    public String getName() {
+        return "round-robin";
+    }
+}
@@ -0,0 +1,160 @@
+package balancer;
+
+import com.google.gson.JsonParseException;
+import server.APIServer;
+import server.Server;
+import server.TCPServer;
+import server.UDPServer;
+import util.ConfigUtil;
+import util.LoggingUtil;
+import util.MessageUtil;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+
+/**
+ * Applies backend register, weight and unregister commands to the registry, whether they arrive as JSON or as
+ * binary control frames. Invalid commands throw IllegalArgumentException.
+ * {@code onRemoved} hands a removed backend's sessions back to the workers and {@code onEmpty} runs once the
+ * last backend is gone. A backend still warming up is pending under its background port until it is published, so
+ * an unregister arriving in the meantime cancels it instead of leaving it to be published afterwards.
+ */
+public class ServerControl {
+
+    private final ServerRegistry serverRegistry;
+    private final BackendRouter router;
+    private final Consumer<Backend> onRemoved;
+    private final Runnable onEmpty;
+    private final Map<Integer, Backend> pendingRegistrations = new ConcurrentHashMap<>();
+
+    public ServerControl(ServerRegistry serverRegistry, BackendRouter router, Consumer<Backend> onRemoved, Runnable onEmpty) {
+        this.serverRegistry = serverRegistry;
+        this.router = router;
+        this.onRemoved = onRemoved;
+        this.onEmpty = onEmpty;
+    }
+
+    /**
+     * Runs a JSON server command and returns the acknowledgement to send back.
+     */
+    public String handleJsonMessage(String request){
+        try{
+            MessageUtil.ServerCommand command = MessageUtil.parseServerCommand(request);
+            if (command.cmd().equals("register")){
+                register(command.protocol(),command.backgroundPort(),command.weight(),command.maxConnections());
+            }else if (command.cmd().equals("weight")){
+                updateWeight(command.protocol(),command.backgroundPort(),command.weight(),command.maxConnections());
+            }else{
+                unregister(command.protocol(),command.backgroundPort());
+            }
+            return MessageUtil.getSuccessAwkMessage();
+        }catch(JsonParseException | IllegalArgumentException e){
+            return MessageUtil.getFailedAwkMessage(e.getMessage());
+        }
+    }
+
+    public void register(String protocol,int backgroundPost,int weight,int maxConnections) {
+        Server server = switch (protocol) {
+            case "tcp" -> TCPServer.TCPServerManager.getServerInstance(backgroundPost);
+            case "udp" -> UDPServer.UDPServerManager.getServerInstance(backgroundPost);
+            case "http" -> APIServer.APIServerManager.getServerInstance(backgroundPost);
+            default -> throw new IllegalArgumentException("Unknown protocol: " + protocol);
+        };
+        if (server == null) {
+            throw new IllegalArgumentException("Unknown background port: " + backgroundPost);
+        }
+        Backend backend = createBackend(server);
+        backend.setWeight(weight);
+        backend.setMaxConnections(maxConnections);
+        router.getStrategy(protocol);
+        if (BackendWarmer.isEnabled()) {
+            // The backend only becomes eligible once warm-up has finished, off the acceptor thread.
+            pendingRegistrations.put(backgroundPost, backend);
+            CompletableFuture.runAsync(() -> {
+                int answered = BackendWarmer.warmUp(backend);
+                LoggingUtil.logAsync(Level.INFO,"Warmed up " + protocol + " Server " + server.getPort() + " with " + answered + " requests");
+                synchronized (pendingRegistrations) {
+                    if (!pendingRegistrations.remove(backgroundPost, backend)) {
+                        LoggingUtil.logAsync(Level.INFO,"Dropping " + protocol + " Server " + server.getPort() + " unregistered during warm-up");
+                        backend.invalidateConnectionPools();
+                        return;
+                    }
+                    activate(backend, weight);
+                }
+            });
+            return;
+        }
+        activate(backend, weight);
+    }
+
+    public void updateWeight(String protocol,int backgroundPort,int weight,int maxConnections) {
+        Backend backend = serverRegistry.find(protocol, backgroundPort);
+        if (backend == null) {
+            throw new IllegalArgumentException("Unknown background port: " + backgroundPort);
+        }
+        backend.setWeight(weight);
+        backend.setMaxConnections(maxConnections);
+        serverRegistry.refresh(protocol);
+        LoggingUtil.logAsync(Level.INFO,"Updated " + protocol + " Server " + backend.getPort() + " / " + backgroundPort + " weight : " + weight + " , max connections : " + maxConnections);
+    }
+
+    public void unregister(String protocol,int backgroundPort){
+
+        Backend removed;
+        synchronized (pendingRegistrations) {
+            Backend pending = pendingRegistrations.get(backgroundPort);
+            boolean cancelled = pending != null && pending.getProtocol().equals(protocol)
+                    && pendingRegistrations.remove(backgroundPort, pending);
+            if (cancelled) {
+                LoggingUtil.logAsync(Level.INFO,"Cancelled registration of " + protocol + " Server " + pending.getPort() + " during warm-up");
+            }
+            if (serverRegistry.getServers(protocol).length == 0) {
+                if (cancelled) {
+                    return;
+                }
+                throw new IllegalArgumentException("No server registered for protocol: " + protocol);
+            }
+            removed = serverRegistry.unregister(protocol, backgroundPort);
+        }
+        if (removed != null) {
+            removed.invalidateConnectionPools();
+        }
+        if (serverRegistry.getTotalCount() == 0){
+            onEmpty.run();
+            return;
+        }
+        if (removed != null) {
+            onRemoved.accept(removed);
+        }
+    }
+
+    private void activate(Backend backend,int weight) {
+        backend.activate();
+        serverRegistry.register(backend);
+        Server server = backend.getServer();
+        String output = "\n" +
+                "====================\n" +
+                "Load Balancer State : New Register " + server.getProtocol() + " Server - " +
+                " Client & Background port : " + server.getPort() + " / " + server.getBackgroundPort() +
+                " , Weight : " + weight + "\n" +
+                "Remaining Server List\n" +
+                serverRegistry.getAllPortState("server") + "\n" +
+                "====================\n" +
+                "\n";
+        System.out.print(output);
+
+    }
+
+    private static Backend createBackend(Server server) {
+        InetSocketAddress address = new InetSocketAddress("localhost", server.getBackgroundPort());
+        int maxIdle = ConfigUtil.getInt("lb.pool.maxIdle", 64);
+        long idleTimeoutMs = ConfigUtil.getLong("lb.pool.idleTimeoutMs", 60000);
+        ConnectionPool connectionPool = new ConnectionPool(address, ConfigUtil.getInt("lb.pool.minIdle", 0), maxIdle, idleTimeoutMs);
+        ConnectionPool httpConnectionPool = server.getProtocol().equals("http")
+                ? new ConnectionPool(address, 0, maxIdle, idleTimeoutMs) : null;
+        return new Backend(server, connectionPool, httpConnectionPool);
+    }
+}
@@ -0,0 +1,126 @@
+package balancer;
+
+import com.google.gson.JsonObject;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Registered backends, published as immutable per-protocol arrays.
+ * Readers take the current snapshot without locking; writers copy, modify and swap it under the registry lock.
+ */
+public class ServerRegistry {
+
+    private static final Backend[] NO_SERVERS = new Backend[0];
+
+    private volatile Map<String, Backend[]> snapshot = Collections.emptyMap();
+
+    public Backend[] getServers(String protocol) {
+        return snapshot.getOrDefault(protocol, NO_SERVERS);
+    }
+
+    public Map<String, Backend[]> getSnapshot() {
+        return snapshot;
+    }
+
+    public int getTotalCount() {
+        int total = 0;
+        for (Backend[] servers : snapshot.values()) {
+            total += servers.length;
+        }
+        return total;
+    }
+
+    /**
+     * One JSON line per registered server; {@code type} "client" lists client ports, anything else adds background ports.
+     */
+    public String getAllPortState(String type){
+        StringBuilder result = new StringBuilder();
+        Set<String> uniqueServers = new HashSet<>();
+
+        for (Backend[] serverList : snapshot.values()) {
+            for (Backend server : serverList) {
+                int targetPort = type.equals("client") ? server.getPort() : server.getBackgroundPort();
+                String uniqueKey = server.getProtocol() + ":" + targetPort;
+                if (uniqueServers.add(uniqueKey)) {
+                    JsonObject jsonObject = new JsonObject();
+                    jsonObject.addProperty("Protocol", server.getProtocol());
+                    jsonObject.addProperty("Port", server.getPort());
+                    if (!type.equals("client")){
+                        jsonObject.addProperty("Background Port", targetPort);
+                    }
+                    result.append(jsonObject).append("\n");
+                }
+            }
+        }
+        if (!result.isEmpty()) {
+            result.setLength(result.length() - 1);
+        }else{
+            return "No Server Register";
+        }
+        return result.toString();
+    }
+
+    public synchronized void register(Backend backend) {
+        Backend[] servers = getServers(backend.getProtocol());
+        Backend[] updated = Arrays.copyOf(servers, servers.length + 1);
+        updated[servers.length] = backend;
+        publish(backend.getProtocol(), updated);
+    }
+
+    public synchronized Backend unregister(String protocol, int backgroundPort) {
+        for (Backend server : getServers(protocol)) {
+            if (server.getBackgroundPort() == backgroundPort) {
+                remove(server);
+                return server;
+            }
+        }
+        return null;
+    }
+
+    public synchronized boolean remove(Backend backend) {
+        Backend[] servers = getServers(backend.getProtocol());
+        for (int i = 0; i < servers.length; i++) {
+            if (servers[i] == backend) {
+                Backend[] updated = new Backend[servers.length - 1];
+                System.arraycopy(servers, 0, updated, 0, i);
+                System.arraycopy(servers, i + 1, updated, i, servers.length - i - 1);
+                publish(backend.getProtocol(), updated);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public synchronized Backend find(String protocol, int backgroundPort) {
+        for (Backend server : getServers(protocol)) {
+            if (server.getBackgroundPort() == backgroundPort) {
+                return server;
+            }
+        }
+        return null;
+    }
+
+    public synchronized void refresh(String protocol) {
+        // Republish the same servers under a new array so strategies rebuild state derived from them.
+        Backend[] servers = getServers(protocol);
+        publish(protocol, servers.clone());
+    }
+
+    public synchronized void clear() {
+        snapshot = Collections.emptyMap();
+    }
+
+    private void publish(String protocol, Backend[] servers) {
+        Map<String, Backend[]> updated = new LinkedHashMap<>(snapshot);
+        if (servers.length == 0) {
+            updated.remove(protocol);
+        } else {
+            updated.put(protocol, servers);
+        }
+        snapshot = Collections.unmodifiableMap(updated);
+    }
+}
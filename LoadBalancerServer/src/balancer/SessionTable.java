@@ -0,0 +1,134 @@
+package balancer;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Client sessions of one worker loop in least-recently-used order, indexed by backend
+ * so that losing a backend only touches the sessions bound to it.
+ * Only the owning worker touches an instance; the gauges are shared by all workers.
+ */
+public class SessionTable {
+
+    private static final AtomicLong liveSessions = new AtomicLong();
+    private static final LongAdder createdSessions = new LongAdder();
+    private static final LongAdder closedSessions = new LongAdder();
+    private static final LongAdder lruEvictions = new LongAdder();
+
+    private final LinkedHashMap<ClientConnection, ClientSession> sessions = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Backend, Map<ClientConnection, ClientSession>> sessionsByBackend = new HashMap<>();
+    private final int maxSessions;
+
+    public SessionTable(int maxSessions) {
+        this.maxSessions = maxSessions;
+    }
+
+    public ClientSession get(ClientConnection connection) {
+        return sessions.get(connection);
+    }
+
+    /**
+     * Adds a session and returns the least recently used connection if the table overflowed, so the caller can close it.
+     */
+    public ClientConnection put(ClientConnection connection, ClientSession session) {
+        ClientSession previous = sessions.put(connection, session);
+        if (previous == null) {
+            liveSessions.incrementAndGet();
+            createdSessions.increment();
+        } else {
+            unindex(connection, previous);
+        }
+        index(connection, session);
+        if (sessions.size() <= maxSessions) {
+            return null;
+        }
+        Iterator<Map.Entry<ClientConnection, ClientSession>> eldest = sessions.entrySet().iterator();
+        Map.Entry<ClientConnection, ClientSession> entry = eldest.next();
+        ClientConnection evicted = entry.getKey();
+        unindex(evicted, entry.getValue());
+        eldest.remove();
+        liveSessions.decrementAndGet();
+        lruEvictions.increment();
+        return evicted;
+    }
+
+    public void remove(ClientConnection connection) {
+        ClientSession session = sessions.remove(connection);
+        if (session != null) {
+            unindex(connection, session);
+            liveSessions.decrementAndGet();
+            closedSessions.increment();
+        }
+    }
+
+    /**
+     * Moves a session to another backend without touching its recency.
+     */
+    public void rebind(ClientConnection connection, ClientSession session, Backend backend) {
+        unindex(connection, session);
+        session.setBackend(backend);
+        index(connection, session);
+    }
+
+    /**
+     * A copy of the sessions currently bound to a backend.
+     */
+    public Map<ClientConnection, ClientSession> getSessions(Backend backend) {
+        Map<ClientConnection, ClientSession> bound = sessionsByBackend.get(backend);
+        return bound == null ? Collections.emptyMap() : new HashMap<>(bound);
+    }
+
+    public void forEach(BiConsumer<ClientConnection, ClientSession> action) {
+        sessions.forEach(action);
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    public void clear() {
+        liveSessions.addAndGet(-sessions.size());
+        closedSessions.add(sessions.size());
+        sessionsByBackend.forEach((backend, bound) -> bound.forEach((connection, session) -> backend.onSessionUnbound()));
+        sessions.clear();
+        sessionsByBackend.clear();
+    }
+
+    private void index(ClientConnection connection, ClientSession session) {
+        if (sessionsByBackend.computeIfAbsent(session.getBackend(), key -> new HashMap<>()).put(connection, session) == null) {
+            session.getBackend().onSessionBound();
+        }
+    }
+
+    private void unindex(ClientConnection connection, ClientSession session) {
+        Map<ClientConnection, ClientSession> bound = sessionsByBackend.get(session.getBackend());
+        if (bound == null || bound.remove(connection) == null) {
+            return;
+        }
+        session.getBackend().onSessionUnbound();
+        if (bound.isEmpty()) {
+            sessionsByBackend.remove(session.getBackend());
+        }
+    }
+
+    public static long getLiveCount() {
+        return liveSessions.get();
+    }
+
+    public static long getLruEvictionCount() {
+        return lruEvictions.sum();
+    }
+
+    public static String getStats() {
+        return "live=" + liveSessions.get() +
+                " created=" + createdSessions.sum() +
+                " closed=" + closedSessions.sum() +
+                " lruEvicted=" + lruEvictions.sum();
+    }
+}
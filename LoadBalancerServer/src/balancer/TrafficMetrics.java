@@ -0,0 +1,79 @@
+package balancer;
+
+import util.LatencyHistogram;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Request, error, byte and latency counters for one backend or one protocol.
+ * Every method is safe to call from any thread; recording never locks or allocates.
+ */
+public class TrafficMetrics {
+
+    private static final Map<String, TrafficMetrics> protocols = new ConcurrentHashMap<>();
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    /**
+     * Totals for every backend of a protocol, kept across backends coming and going.
+     */
+    public static TrafficMetrics forProtocol(String protocol) {
+        return protocols.computeIfAbsent(protocol, key -> new TrafficMetrics());
+    }
+
+    public void recordSuccess(long latencyNanos) {
+        requests.increment();
+        latency.record(latencyNanos);
+    }
+
+    public void recordFailure() {
+        requests.increment();
+        failures.increment();
+    }
+
+    public void recordBytes(long sent, long received) {
+        bytesSent.add(sent);
+        bytesReceived.add(received);
+    }
+
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived.sum();
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * Appends the counters as JSON members, without the enclosing braces.
+     */
+    void appendJson(StringBuilder json) {
+        json.append("\"requests\":").append(requests.sum())
+                .append(",\"errors\":").append(failures.sum())
+                .append(",\"bytesSent\":").append(bytesSent.sum())
+                .append(",\"bytesReceived\":").append(bytesReceived.sum())
+                .append(",\"latencyUs\":{\"mean\":").append(Math.round(latency.getMeanNanos() / 1000))
+                .append(",\"p50\":").append(latency.getValueAtQuantile(0.50) / 1000)
+                .append(",\"p90\":").append(latency.getValueAtQuantile(0.90) / 1000)
+                .append(",\"p99\":").append(latency.getValueAtQuantile(0.99) / 1000)
+                .append(",\"p999\":").append(latency.getValueAtQuantile(0.999) / 1000)
+                .append('}');
+    }
+}
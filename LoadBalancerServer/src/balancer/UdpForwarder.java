@@ -0,0 +1,123 @@
+package balancer;
+
+import util.BinaryCodec;
+import util.BufferPool;
+import util.LoggingUtil;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+
+/**
+ * Long-lived non-blocking UDP sockets shared by every datagram exchange of one worker loop.
+ * Each request goes out as a binary FORWARD frame whose request id is a per-worker correlation id;
+ * the backend echoes it in its RESPONSE, which routes the reply back to the waiting exchange.
+ * Not thread-safe: only the owning worker touches an instance.
+ */
+public class UdpForwarder {
+
+    private final DatagramChannel[] channels;
+    private final Map<Long, BackendExchange> pending = new HashMap<>();
+    private long nextCorrelationId = 1;
+
+    private UdpForwarder(int sockets) {
+        channels = new DatagramChannel[Math.max(1, sockets)];
+    }
+
+    /**
+     * Opens {@code sockets} UDP sockets bound to ephemeral ports and registers them for reading on {@code selector}.
+     */
+    public static UdpForwarder open(Selector selector, int sockets) throws IOException {
+        UdpForwarder forwarder = new UdpForwarder(sockets);
+        DatagramChannel[] channels = forwarder.channels;
+        try {
+            for (int i = 0; i < channels.length; i++) {
+                channels[i] = DatagramChannel.open();
+                channels[i].bind(null);
+                channels[i].configureBlocking(false);
+                channels[i].register(selector, SelectionKey.OP_READ, forwarder);
+            }
+        } catch (IOException e) {
+            forwarder.close();
+            throw e;
+        }
+        return forwarder;
+    }
+
+    /**
+     * Sends the exchange's request and registers it for correlation. Returns false, without registering it, when
+     * our own send buffer is full: that is local back-pressure and says nothing about the backend.
+     */
+    public boolean send(BackendExchange exchange) throws IOException {
+        long correlationId = nextCorrelationId++;
+        InetSocketAddress address = exchange.getBackend().getConnectionPool().getAddress();
+        ByteBuffer frame = BinaryCodec.encode(BinaryCodec.OP_FORWARD, correlationId, exchange.getRequest().duplicate());
+        try {
+            DatagramChannel channel = channels[(int) (correlationId % channels.length)];
+            if (channel.send(frame, address) == 0) {
+                return false;
+            }
+        } finally {
+            BufferPool.release(frame);
+        }
+        exchange.setCorrelationId(correlationId);
+        pending.put(correlationId, exchange);
+        return true;
+    }
+
+    /**
+     * Receives one datagram from {@code channel} into {@code buffer} and returns the exchange it answers,
+     * or null when nothing is left to read. Datagrams that match no pending exchange are skipped.
+     */
+    public BackendExchange receive(DatagramChannel channel, ByteBuffer buffer) throws IOException {
+        while (true) {
+            buffer.clear();
+            SocketAddress source = channel.receive(buffer);
+            if (source == null) {
+                buffer.flip();
+                return null;
+            }
+            buffer.flip();
+            if (buffer.remaining() < BinaryCodec.HEADER_LENGTH || !BinaryCodec.isBinary(buffer.get(0))
+                    || buffer.remaining() < BinaryCodec.HEADER_LENGTH + BinaryCodec.getPayloadLength(buffer)) {
+                continue;
+            }
+            BackendExchange exchange = pending.get(BinaryCodec.getRequestId(buffer));
+            // Late replies to timed-out requests, or datagrams from anyone but the addressed backend, are dropped.
+            if (exchange != null && source.equals(exchange.getBackend().getConnectionPool().getAddress())) {
+                pending.remove(exchange.getCorrelationId());
+                return exchange;
+            }
+        }
+    }
+
+    /**
+     * Forgets an exchange that finished without a reply, so a late one is ignored.
+     */
+    public void cancel(BackendExchange exchange) {
+        pending.remove(exchange.getCorrelationId());
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    public void close() {
+        for (DatagramChannel channel : channels) {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    LoggingUtil.logAsync(Level.WARNING,"Failed to close UDP forwarder socket: " + e.getMessage());
+                }
+            }
+        }
+        pending.clear();
+    }
+}
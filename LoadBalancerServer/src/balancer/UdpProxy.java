@@ -0,0 +1,218 @@
+package balancer;
+
+import util.BufferPool;
+import util.ConfigUtil;
+import util.DrainCounter;
+import util.LoggingUtil;
+import util.TimingWheel;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.logging.Level;
+
+/**
+ * Data-plane UDP proxy behind the front socket on port 8080.
+ * Each client address gets a flow: a backend picked once by the routing function and a NAT'd upstream socket
+ * connected to it, so replies arriving on that socket belong to exactly one client and are relayed from the front socket.
+ * Flows expire after lb.udp.flowIdleMs without traffic in either direction.
+ * Not thread-safe: every method runs on the loop that owns the selector.
+ */
+public class UdpProxy {
+
+    private static final long FLOW_IDLE_MS = ConfigUtil.getLong("lb.udp.flowIdleMs", 60000);
+    private static final int MAX_FLOWS = ConfigUtil.getInt("lb.udp.maxFlows", 65536);
+    private final int drainBudget = Math.max(1, ConfigUtil.getInt("lb.udp.drainBudget", 64));
+
+    private static final LongAdder packetsIn = new LongAdder();
+    private static final LongAdder packetsOut = new LongAdder();
+    private static final LongAdder packetsDropped = new LongAdder();
+    private static final LongAdder flowsCreated = new LongAdder();
+    private static final LongAdder flowsExpired = new LongAdder();
+    private static final LongAdder flowsClosed = new LongAdder();
+
+    private final Selector selector;
+    private final DatagramChannel frontChannel;
+    private final Function<String, Backend> router;
+    private final Map<SocketAddress, Flow> flows = new HashMap<>();
+    private final TimingWheel timers = new TimingWheel(ConfigUtil.getLong("lb.timer.tickMs", 10));
+    private final ByteBuffer replyBuffer = BufferPool.acquire(65536);
+    private final DrainCounter drainCounter = new DrainCounter();
+
+    public UdpProxy(Selector selector, DatagramChannel frontChannel, Function<String, Backend> router) {
+        this.selector = selector;
+        this.frontChannel = frontChannel;
+        this.router = router;
+    }
+
+    /**
+     * Forwards one client datagram upstream, creating the client's flow on first sight.
+     */
+    public void onClientDatagram(SocketAddress client, ByteBuffer payload) {
+        Flow flow = flows.get(client);
+        if (flow != null && flow.backend.isEjected()) {
+            closeFlow(flow);
+            flow = null;
+        }
+        if (flow == null) {
+            flow = openFlow(client);
+            if (flow == null) {
+                packetsDropped.increment();
+                return;
+            }
+        }
+        try {
+            if (flow.upstream.write(payload) == 0) {
+                packetsDropped.increment();
+                return;
+            }
+            flow.lastActivityNanos = System.nanoTime();
+            packetsIn.increment();
+        } catch (IOException e) {
+            LoggingUtil.logAsync(Level.WARNING,"Failed to forward datagram to udp Server " + flow.backend.getPort() + " : " + e.getMessage());
+            packetsDropped.increment();
+            closeFlow(flow);
+        }
+    }
+
+    /**
+     * Relays pending replies on a flow's upstream socket back to its client, up to lb.udp.drainBudget per wakeup;
+     * whatever is left keeps the key ready for the next select.
+     */
+    public void onUpstreamReadable(SelectionKey key) {
+        Flow flow = (Flow) key.attachment();
+        int drained = 0;
+        try {
+            for (; drained < drainBudget; drained++) {
+                replyBuffer.clear();
+                if (flow.upstream.read(replyBuffer) <= 0) {
+                    break;
+                }
+                replyBuffer.flip();
+                flow.lastActivityNanos = System.nanoTime();
+                if (frontChannel.send(replyBuffer, flow.client) == 0) {
+                    packetsDropped.increment();
+                } else {
+                    packetsOut.increment();
+                }
+            }
+        } catch (IOException e) {
+            // A connected datagram socket reports ICMP port unreachable here once the backend is gone.
+            LoggingUtil.logAsync(Level.WARNING,"Closing UDP flow to udp Server " + flow.backend.getPort() + " : " + e.getMessage());
+            closeFlow(flow);
+        } finally {
+            drainCounter.record(drained, drained == drainBudget);
+        }
+    }
+
+    public DrainCounter getDrainCounter() {
+        return drainCounter;
+    }
+
+    public long getWaitMillis() {
+        return timers.getWaitMillis();
+    }
+
+    public void advance() {
+        timers.advance();
+    }
+
+    public void close() {
+        for (Flow flow : flows.values().toArray(new Flow[0])) {
+            closeFlow(flow);
+        }
+        BufferPool.release(replyBuffer);
+    }
+
+    public static String getStats() {
+        return "flows=" + (flowsCreated.sum() - flowsClosed.sum()) +
+                " in=" + packetsIn.sum() +
+                " out=" + packetsOut.sum() +
+                " dropped=" + packetsDropped.sum() +
+                " flowsCreated=" + flowsCreated.sum() +
+                " flowsExpired=" + flowsExpired.sum();
+    }
+
+    private Flow openFlow(SocketAddress client) {
+        if (flows.size() >= MAX_FLOWS) {
+            return null;
+        }
+        String routingKey = client instanceof InetSocketAddress address ? address.getAddress().getHostAddress() : client.toString();
+        Backend backend = router.apply(routingKey);
+        if (backend == null) {
+            return null;
+        }
+        DatagramChannel upstream = null;
+        try {
+            upstream = DatagramChannel.open();
+            upstream.configureBlocking(false);
+            upstream.connect(backend.getConnectionPool().getAddress());
+            Flow flow = new Flow(client, backend, upstream);
+            flow.key = upstream.register(selector, SelectionKey.OP_READ, flow);
+            flows.put(client, flow);
+            flowsCreated.increment();
+            scheduleIdleTimeout(flow, FLOW_IDLE_MS);
+            return flow;
+        } catch (IOException e) {
+            LoggingUtil.logAsync(Level.SEVERE,"Failed to open UDP flow to udp Server " + backend.getPort() + " : " + e.getMessage());
+            if (upstream != null) {
+                try {
+                    upstream.close();
+                } catch (IOException closeFailure) {
+                    LoggingUtil.logAsync(Level.WARNING,"Failed to close UDP flow socket: " + closeFailure.getMessage());
+                }
+            }
+            return null;
+        }
+    }
+
+    private void scheduleIdleTimeout(Flow flow, long delayMillis) {
+        flow.idleTimeout = timers.schedule(TimingWheel.Kind.IDLE, delayMillis, () -> {
+            // Packets only stamp the flow; the timer re-arms itself for the remaining idle time.
+            long idleMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - flow.lastActivityNanos);
+            if (idleMillis < FLOW_IDLE_MS) {
+                scheduleIdleTimeout(flow, FLOW_IDLE_MS - idleMillis);
+                return;
+            }
+            flowsExpired.increment();
+            closeFlow(flow);
+        });
+    }
+
+    private void closeFlow(Flow flow) {
+        timers.cancel(flow.idleTimeout);
+        if (flows.remove(flow.client, flow)) {
+            flowsClosed.increment();
+        }
+        flow.key.cancel();
+        try {
+            flow.upstream.close();
+        } catch (IOException e) {
+            LoggingUtil.logAsync(Level.WARNING,"Failed to close UDP flow socket: " + e.getMessage());
+        }
+    }
+
+    public static final class Flow {
+
+        private final SocketAddress client;
+        private final Backend backend;
+        private final DatagramChannel upstream;
+        private SelectionKey key;
+        private TimingWheel.Timeout idleTimeout;
+        private long lastActivityNanos = System.nanoTime();
+
+        private Flow(SocketAddress client, Backend backend, DatagramChannel upstream) {
+            this.client = client;
+            this.backend = backend;
+            this.upstream = upstream;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package balancer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Smooth weighted round robin, as in nginx: weight 5/1/1 yields a a b a c a a rather than a a a a a b c.
+ * One full cycle of the smooth order is precomputed per server snapshot, so a pick is an index increment.
+ * Slow-starting backends enter with their warm-up weight; the registry republishes the snapshot as they ramp.
+ */
+public class WeightedRoundRobinStrategy implements LoadBalancingStrategy {
+
+    private static final int MAX_SCHEDULE_LENGTH = 1 << 16;
+
+    private final AtomicInteger cursor = new AtomicInteger();
+    private volatile Schedule schedule;
+
+    @Override
+    public Backend select(Backend[] servers) {
+        if (servers.length == 0) {
+            return null;
+        }
+        Schedule current = schedule;
+        if (current == null || current.servers != servers) {
+            current = rebuild(servers);
+        }
+        int[] order = current.order;
+        int start = cursor.getAndIncrement();
+        // Skip servers at their connection cap; give up after one full cycle.
+        for (int i = 0; i < order.length; i++) {
+            Backend candidate = servers[order[Math.floorMod(start + i, order.length)]];
+            if (!candidate.isSaturated()) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String getName() {
+        return "weighted-round-robin";
+    }
+
+    private synchronized Schedule rebuild(Backend[] servers) {
+        if (schedule == null || schedule.servers != servers) {
+            schedule = new Schedule(servers);
+        }
+        return schedule;
+    }
+
+    private static class Schedule {
+
+        private final Backend[] servers;
+        private final int[] order;
+
+        private Schedule(Backend[] servers) {
+            int[] weights = new int[servers.length];
+            int divisor = 0;
+            for (int i = 0; i < servers.length; i++) {
+                weights[i] = servers[i].getEffectiveWeight();
+                divisor = gcd(divisor, weights[i]);
+            }
+            long total = 0;
+            for (int i = 0; i < weights.length; i++) {
+                weights[i] /= divisor;
+                total += weights[i];
+            }
+            if (total > MAX_SCHEDULE_LENGTH) {
+                // Scale very large weights down; the ratio stays within rounding of the configured one.
+                double scale = (double) MAX_SCHEDULE_LENGTH / total;
+                total = 0;
+                for (int i = 0; i < weights.length; i++) {
+                    weights[i] = Math.max(1, (int) (weights[i] * scale));
+                    total += weights[i];
+                }
+            }
+            this.servers = servers;
+            this.order = new int[(int) total];
+            int[] current = new int[weights.length];
+            for (int pick = 0; pick < order.length; pick++) {
+                int best = 0;
+                for (int i = 0; i < weights.length; i++) {
+                    current[i] += weights[i];
+                    if (current[i] > current[best]) {
+                        best = i;
+                    }
+                }
+                current[best] -= (int) total;
+                order[pick] = best;
+            }
+        }
+
+        private static int gcd(int a, int b) {
+            while (b != 0) {
+                int next = a % b;
+                a = b;
+                b = next;
+            }
+            return a;
+        }
+    }
+}
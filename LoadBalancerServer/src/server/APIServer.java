@@ -1,11 +1,17 @@
 package server;
 
 import util.BackgroundUtil;
+import util.BufferPool;
+import util.FrameDecoder;
+import util.FrameUtil;
+import util.HttpParser;
+import util.HttpUtil;
 import util.LoggingUtil;
 import util.MessageUtil;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.channels.*;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
@@ -103,7 +109,7 @@ public class APIServer extends TCPBaseServer{
     private void handleTcpConnection() throws IOException {
         SocketChannel clientChannel = serverSocketChannel.accept();
         clientChannel.configureBlocking(false);
-        clientChannel.register(selector, SelectionKey.OP_READ);
+        clientChannel.register(selector, SelectionKey.OP_READ, new FrameDecoder());
     }
 
     private void connectToLoadBalancer() throws IOException {
@@ -119,8 +125,8 @@ public class APIServer extends TCPBaseServer{
         try{
             initialize();
             connectToLoadBalancer();
-            loadBalancerSocket.register(selector, SelectionKey.OP_READ);
-            sendToLoadBalancerMessage(MessageUtil.getServerRegisterMessage(getProtocol(), getPort(),getBackgroundPort()));
+            loadBalancerSocket.register(selector, SelectionKey.OP_READ, new FrameDecoder());
+            sendRegistration(true);
             LoggingUtil.logAsync(Level.INFO,"API Server connected to Load Balancer on port "+port);
             printAllState("register");
         }catch (IOException e){
@@ -132,7 +138,7 @@ public class APIServer extends TCPBaseServer{
     public void unregisterLoadBalancer(){
         CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
             try {
-                sendToLoadBalancerMessage(MessageUtil.getServerUnRegisterMessage(getProtocol(), port, backgroundPort));
+                sendRegistration(false);
                 LoggingUtil.logAsync(Level.INFO,"Unregister message sent to Load Balancer for port " + port);
             } catch (IOException e) {
                 LoggingUtil.logAsync(Level.SEVERE,"Failed to send unregister message to Load Balancer: " + e.getMessage());
@@ -165,12 +171,38 @@ public class APIServer extends TCPBaseServer{
         }
     }
 
+    @Override
+    protected boolean handleHttpRequest(SocketChannel channel, HttpParser request) throws IOException {
+        String target = request.getMethod() + " " + request.getTarget();
+        ByteBuffer body = request.copyBody();
+        String message;
+        try {
+            message = body.hasRemaining() ? BufferPool.toString(body) : target;
+        } finally {
+            BufferPool.release(body);
+        }
+        LoggingUtil.logAsync(Level.INFO,"Received HTTP request: " + target);
+        byte[] responseBody = MessageUtil.getAPIServerData(port, message).getBytes(StandardCharsets.UTF_8);
+        boolean keepAlive = request.isKeepAlive();
+        writeFrame(channel, HttpUtil.encodeResponse(200, "application/json", responseBody, keepAlive, !request.isMethod("HEAD")));
+        return keepAlive;
+    }
+
     @Override
     protected void sendToLoadBalancerMessage(String message) throws IOException {
         if (loadBalancerSocket != null && loadBalancerSocket.isConnected()) {
-            ByteBuffer buffer = ByteBuffer.wrap(message.getBytes());
-            loadBalancerSocket.write(buffer);
+            FrameUtil.writeFrame(loadBalancerSocket, message);
+        } else {
+            LoggingUtil.logAsync(Level.SEVERE,"Not connected to Load Balancer, unable to send message");
+        }
+    }
+
+    @Override
+    protected void sendToLoadBalancerFrame(ByteBuffer frame) throws IOException {
+        if (loadBalancerSocket != null && loadBalancerSocket.isConnected()) {
+            writeFrame(loadBalancerSocket, frame);
         } else {
+            BufferPool.release(frame);
             LoggingUtil.logAsync(Level.SEVERE,"Not connected to Load Balancer, unable to send message");
         }
     }
@@ -4,9 +4,13 @@ import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
 import com.google.gson.JsonParser;
 import com.google.gson.stream.JsonReader;
+import util.BinaryCodec;
+import util.BufferPool;
+import util.ConfigUtil;
 import util.LoggingUtil;
 import util.MessageUtil;
 import java.io.StringReader;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.logging.Level;
@@ -14,6 +18,7 @@ import java.util.logging.Level;
 public abstract class Server {
 
     protected static final Map<Integer, Server> serverInstance = new HashMap<>();
+    protected static final boolean BINARY_CONTROL = ConfigUtil.getString("server.controlProtocol", "json").equals("binary");
 
     public abstract String getProtocol();
     public abstract int getBackgroundPort();
@@ -21,6 +26,26 @@ public abstract class Server {
     public abstract void start();
     public abstract void registerLoadBalancer();
     public abstract void unregisterLoadBalancer();
+    public abstract void updateWeight(int weight);
+
+    private volatile int weight = ConfigUtil.getInt("server.weight", 1);
+    private volatile int maxConnections = ConfigUtil.getInt("server.maxConnections", 0);
+
+    public int getWeight() {
+        return weight;
+    }
+
+    public void setWeight(int weight) {
+        this.weight = weight;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
 
     protected void printAllState(String type){
 
@@ -56,7 +81,7 @@ public abstract class Server {
                 if ("hello".equals(cmd)) {
                     LoggingUtil.logAsync(Level.INFO,"Health check request from Load Balancer.");
                     jsonObject.addProperty("type","lb");
-                    jsonObject.addProperty("msg", MessageUtil.getHealthCheckAwkMessage());
+                    jsonObject.addProperty("msg", MessageUtil.getHealthCheckAwkMessage(MessageUtil.getHealthCheckSeq(request)));
                     return jsonObject;
                 }
             }else if (jsonRequest.has("awk")){
@@ -74,14 +99,44 @@ public abstract class Server {
             return jsonObject;
         } catch (JsonParseException | IllegalStateException e) {
             jsonObject.addProperty("type","client");
-            if (getProtocol().equals("tcp")){
-                jsonObject.addProperty("msg",MessageUtil.getTCPServerData(getPort(),request));
-            }else if (getProtocol().equals("udp")){
-                jsonObject.addProperty("msg",MessageUtil.getUDPServerData(getPort(),request));
-            }else{
-                jsonObject.addProperty("msg",MessageUtil.getAPIServerData(getPort(),request));
-            }
+            jsonObject.addProperty("msg",getClientResponse(request));
             return jsonObject;
         }
     }
+
+    protected String getClientResponse(String request) {
+        if (getProtocol().equals("tcp")){
+            return MessageUtil.getTCPServerData(getPort(),request);
+        }else if (getProtocol().equals("udp")){
+            return MessageUtil.getUDPServerData(getPort(),request);
+        }else{
+            return MessageUtil.getAPIServerData(getPort(),request);
+        }
+    }
+
+    protected ByteBuffer handleBinaryRequest(ByteBuffer frame) {
+        long requestId = BinaryCodec.getRequestId(frame);
+        switch (BinaryCodec.getOpcode(frame)) {
+            case BinaryCodec.OP_FORWARD -> {
+                String request = BufferPool.toString(BinaryCodec.getPayload(frame));
+                LoggingUtil.logAsync(Level.INFO,"Received binary message from Load Balancer or Client: " + request);
+                return BinaryCodec.encode(BinaryCodec.OP_RESPONSE, requestId, getClientResponse(request));
+            }
+            case BinaryCodec.OP_HEALTH_CHECK -> {
+                LoggingUtil.logAsync(Level.INFO,"Health check request from Load Balancer.");
+                return BinaryCodec.encodeEmpty(BinaryCodec.OP_ACK, requestId);
+            }
+            case BinaryCodec.OP_ACK -> {
+                LoggingUtil.logAsync(Level.INFO,"Awk is successful.");
+                return null;
+            }
+            case BinaryCodec.OP_ERROR -> {
+                LoggingUtil.logAsync(Level.INFO,"Awk is failed. - " + BufferPool.toString(BinaryCodec.getPayload(frame)));
+                return null;
+            }
+            default -> {
+                return BinaryCodec.encode(BinaryCodec.OP_ERROR, requestId, "Unknown opcode");
+            }
+        }
+    }
 }
@@ -1,6 +1,12 @@
 package server;
 
 import com.google.gson.JsonObject;
+import util.BinaryCodec;
+import util.BufferPool;
+import util.FrameDecoder;
+import util.FrameUtil;
+import util.HttpParser;
+import util.HttpUtil;
 import util.LoggingUtil;
 import util.MessageUtil;
 
@@ -15,46 +21,134 @@ import java.util.logging.Level;
 public abstract class TCPBaseServer extends Server{
 
     protected abstract void sendToLoadBalancerMessage(String message) throws IOException;
+    protected abstract void sendToLoadBalancerFrame(ByteBuffer frame) throws IOException;
+
+    protected void sendRegistration(boolean register) throws IOException {
+        if (BINARY_CONTROL) {
+            byte opcode = register ? BinaryCodec.OP_REGISTER : BinaryCodec.OP_UNREGISTER;
+            sendToLoadBalancerFrame(BinaryCodec.encodeRegistration(opcode, 0, getProtocol(), getPort(), getBackgroundPort(), getWeight(), getMaxConnections()));
+        } else if (register) {
+            sendToLoadBalancerMessage(MessageUtil.getServerRegisterMessage(getProtocol(), getPort(), getBackgroundPort(), getWeight(), getMaxConnections()));
+        } else {
+            sendToLoadBalancerMessage(MessageUtil.getServerUnRegisterMessage(getProtocol(), getPort(), getBackgroundPort()));
+        }
+    }
+
+    @Override
+    public void updateWeight(int weight) {
+        setWeight(weight);
+        try {
+            if (BINARY_CONTROL) {
+                sendToLoadBalancerFrame(BinaryCodec.encodeRegistration(BinaryCodec.OP_SET_WEIGHT, 0, getProtocol(), getPort(), getBackgroundPort(), weight, getMaxConnections()));
+            } else {
+                sendToLoadBalancerMessage(MessageUtil.getServerWeightMessage(getProtocol(), getPort(), getBackgroundPort(), weight, getMaxConnections()));
+            }
+            LoggingUtil.logAsync(Level.INFO,"Weight update sent to Load Balancer for port " + getPort() + " : " + weight);
+        } catch (IOException e) {
+            LoggingUtil.logAsync(Level.SEVERE,"Failed to send weight update to Load Balancer: " + e.getMessage());
+        }
+    }
+
+    protected void writeFrame(SocketChannel channel, ByteBuffer frame) throws IOException {
+        try {
+            while (frame.hasRemaining()) {
+                if (channel.write(frame) == 0) {
+                    Thread.onSpinWait();
+                }
+            }
+        } finally {
+            BufferPool.release(frame);
+        }
+    }
 
     protected void handleHealthCheck(SelectionKey key) throws IOException{
         DatagramChannel datagramChannel = (DatagramChannel) key.channel();
-        ByteBuffer buffer = ByteBuffer.allocate(1024);
-        SocketAddress address = datagramChannel.receive(buffer);
-        buffer.flip();
-
-        String request = new String(buffer.array(), 0, buffer.limit());
+        ByteBuffer buffer = BufferPool.acquire(1024);
+        SocketAddress address;
+        String request;
+        try {
+            address = datagramChannel.receive(buffer);
+            if (address == null) {
+                return;
+            }
+            buffer.flip();
+            request = BufferPool.toString(buffer);
+        } finally {
+            BufferPool.release(buffer);
+        }
         LoggingUtil.logAsync(Level.INFO,"Received UDP request: " + request);
-        String awkMessage = MessageUtil.getHealthCheckAwkMessage();
+        String awkMessage = MessageUtil.getHealthCheckAwkMessage(MessageUtil.getHealthCheckSeq(request));
         ByteBuffer responseBuffer = ByteBuffer.wrap(awkMessage.getBytes());
         datagramChannel.send(responseBuffer,address);
     }
 
     protected void handleTcpRequest(SelectionKey key){
-        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        SocketChannel loadBalancerChannel = (SocketChannel) key.channel();
+        FrameDecoder decoder = (FrameDecoder) key.attachment();
         try {
-            SocketChannel loadBalancerChannel = (SocketChannel) key.channel();
-            int bytesRead = loadBalancerChannel.read(buffer);
+            int bytesRead = decoder.read(loadBalancerChannel);
 
             if (bytesRead == -1) {
                 loadBalancerChannel.close();
+                decoder.release();
                 return;
             }
 
-            buffer.flip();
-            String message = new String(buffer.array(), 0, bytesRead);
-            if (message.isEmpty()) {
-                LoggingUtil.logAsync(Level.SEVERE,"Received empty message from Load Balancer.");
-                return;
+            ByteBuffer frame;
+            while ((frame = decoder.nextFrame()) != null) {
+                if (decoder.isHttp()) {
+                    // Pipelined requests are answered in order, each before the next one is parsed.
+                    if (!handleHttpRequest(loadBalancerChannel, decoder.getHttpParser())) {
+                        loadBalancerChannel.close();
+                        decoder.release();
+                        return;
+                    }
+                    continue;
+                }
+                if (decoder.isBinary()) {
+                    ByteBuffer response = handleBinaryRequest(frame);
+                    if (response != null) {
+                        writeFrame(loadBalancerChannel, response);
+                    }
+                    continue;
+                }
+                String message = BufferPool.toString(frame);
+                if (message.isEmpty()) {
+                    LoggingUtil.logAsync(Level.SEVERE,"Received empty message from Load Balancer.");
+                    continue;
+                }
+                LoggingUtil.logAsync(Level.INFO,"Received message from Load Balancer or Client: " + message);
+
+                JsonObject responseMessageJson = handleJsonRequest(message);
+                handleResponse(loadBalancerChannel,responseMessageJson);
             }
-            LoggingUtil.logAsync(Level.INFO,"Received message from Load Balancer or Client: " + message);
+        } catch (IOException e) {
+            LoggingUtil.logAsync(Level.SEVERE,"Failed to read from Load Balancer: " + e.getMessage());
+            if (decoder.isHttp()) {
+                rejectHttpRequest(loadBalancerChannel, decoder);
+            }
+        }
+    }
 
-            JsonObject responseMessageJson = handleJsonRequest(message);
-            handleResponse(loadBalancerChannel,responseMessageJson);
+    /**
+     * Answers one parsed HTTP request and returns whether the connection stays open for the next one.
+     * Only the API server speaks HTTP, so the default refuses it.
+     */
+    protected boolean handleHttpRequest(SocketChannel channel, HttpParser request) throws IOException {
+        writeFrame(channel, HttpUtil.encodeResponse(501, "text/plain", "HTTP is not served by " + getProtocol() + " servers", false));
+        return false;
+    }
 
+    private void rejectHttpRequest(SocketChannel channel, FrameDecoder decoder) {
+        try {
+            if (channel.isOpen()) {
+                writeFrame(channel, HttpUtil.encodeResponse(400, "text/plain", "Malformed HTTP request", false));
+                channel.close();
+            }
         } catch (IOException e) {
-            LoggingUtil.logAsync(Level.SEVERE,"Failed to read from Load Balancer: " + e.getMessage());
+            LoggingUtil.logAsync(Level.WARNING,"Failed to reject HTTP request: " + e.getMessage());
         } finally {
-            buffer.clear();
+            decoder.release();
         }
     }
 
@@ -63,16 +157,14 @@ public abstract class TCPBaseServer extends Server{
         String msg = responseMessage.get("msg").getAsString();
         if (type.equals("lb")){
             if (!msg.equals("not send")){
-                if (msg.equals(MessageUtil.getHealthCheckAwkMessage())){
-                    ByteBuffer buffer = ByteBuffer.wrap(msg.getBytes());
-                    channel.write(buffer);
+                if (MessageUtil.isHealthCheckAwkMessage(msg)){
+                    FrameUtil.writeFrame(channel, msg);
                 }else{
                     sendToLoadBalancerMessage(msg);
                 }
             }
         }else if (type.equals("client")){
-            ByteBuffer buffer = ByteBuffer.wrap(msg.getBytes());
-            channel.write(buffer);
+            FrameUtil.writeFrame(channel, msg);
         }else{
             String errorMessage = responseMessage.get("msg").getAsString();
             LoggingUtil.logAsync(Level.SEVERE,"Failed to Make Response Message: " + errorMessage);
@@ -1,8 +1,10 @@
 package server;
 
 import util.BackgroundUtil;
+import util.BufferPool;
+import util.FrameDecoder;
+import util.FrameUtil;
 import util.LoggingUtil;
-import util.MessageUtil;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
@@ -100,7 +102,7 @@ public class TCPServer extends TCPBaseServer {
     private void handleTcpConnection() throws IOException {
         SocketChannel clientChannel = serverSocketChannel.accept();
         clientChannel.configureBlocking(false);
-        clientChannel.register(selector, SelectionKey.OP_READ);
+        clientChannel.register(selector, SelectionKey.OP_READ, new FrameDecoder());
     }
 
     private void connectToLoadBalancer() throws IOException {
@@ -114,7 +116,7 @@ public class TCPServer extends TCPBaseServer {
     public void unregisterLoadBalancer() {
         CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
             try {
-                sendToLoadBalancerMessage(MessageUtil.getServerUnRegisterMessage(getProtocol(), port, backgroundPort));
+                sendRegistration(false);
                 LoggingUtil.logAsync(Level.INFO,"Unregister message sent to Load Balancer for port " + port);
             } catch (IOException e) {
                 LoggingUtil.logAsync(Level.SEVERE,"Failed to send unregister message to Load Balancer: " + e.getMessage());
@@ -152,8 +154,8 @@ public class TCPServer extends TCPBaseServer {
         try{
             initialize();
             connectToLoadBalancer();
-            loadBalancerSocket.register(selector, SelectionKey.OP_READ);
-            sendToLoadBalancerMessage(MessageUtil.getServerRegisterMessage(getProtocol(), getPort(),getBackgroundPort()));
+            loadBalancerSocket.register(selector, SelectionKey.OP_READ, new FrameDecoder());
+            sendRegistration(true);
             LoggingUtil.logAsync(Level.INFO,"TCP Server connected to Load Balancer on port "+port);
             printAllState("register");
         }catch (IOException e){
@@ -163,10 +165,19 @@ public class TCPServer extends TCPBaseServer {
     @Override
     protected void sendToLoadBalancerMessage(String message) throws IOException {
         if (loadBalancerSocket != null && loadBalancerSocket.isConnected()) {
-            ByteBuffer buffer = ByteBuffer.wrap(message.getBytes());
-            loadBalancerSocket.write(buffer);
+            FrameUtil.writeFrame(loadBalancerSocket, message);
         } else {
             LoggingUtil.logAsync(Level.SEVERE,"Not connected to Load Balancer, unable to send message");
         }
     }
+
+    @Override
+    protected void sendToLoadBalancerFrame(ByteBuffer frame) throws IOException {
+        if (loadBalancerSocket != null && loadBalancerSocket.isConnected()) {
+            writeFrame(loadBalancerSocket, frame);
+        } else {
+            BufferPool.release(frame);
+            LoggingUtil.logAsync(Level.SEVERE,"Not connected to Load Balancer, unable to send message");
+        }
+    }
 }
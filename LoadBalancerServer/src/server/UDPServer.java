@@ -2,6 +2,10 @@ package server;
 
 import com.google.gson.JsonObject;
 import util.BackgroundUtil;
+import util.BinaryCodec;
+import util.BufferPool;
+import util.ConfigUtil;
+import util.DrainCounter;
 import util.LoggingUtil;
 import util.MessageUtil;
 import java.io.IOException;
@@ -21,6 +25,8 @@ public class UDPServer extends Server{
     private DatagramChannel serverSocketChannel;
     private Selector selector;
     private volatile boolean isRunning = true;
+    private final int drainBudget = Math.max(1, ConfigUtil.getInt("server.udp.drainBudget", 64));
+    private final DrainCounter drainCounter = new DrainCounter();
 
     public static class UDPServerManager {
         public synchronized static UDPServer getServerInstance(int port) {
@@ -76,7 +82,7 @@ public class UDPServer extends Server{
                     SelectionKey key = keyIterator.next();
                     keyIterator.remove();
                     if (key.isReadable()) {
-                        handleRequest((DatagramChannel) key.channel());
+                        handleRequests((DatagramChannel) key.channel());
                     }
                 }
             }
@@ -87,25 +93,61 @@ public class UDPServer extends Server{
         }
     }
 
-    private void handleRequest(DatagramChannel datagramChannel){
+    private void handleRequests(DatagramChannel datagramChannel){
+        // Drain up to the budget per wakeup; a socket left readable simply selects again straight away.
+        ByteBuffer buffer = BufferPool.acquire(65536);
+        int drained = 0;
         try {
-            ByteBuffer buffer = ByteBuffer.allocate(1024);
+            while (drained < drainBudget && handleRequest(datagramChannel, buffer)) {
+                drained++;
+            }
+        } finally {
+            BufferPool.release(buffer);
+            drainCounter.record(drained, drained == drainBudget);
+        }
+    }
+
+    /**
+     * Receives and answers one datagram; returns false when none was waiting.
+     */
+    private boolean handleRequest(DatagramChannel datagramChannel, ByteBuffer buffer){
+        try {
+            buffer.clear();
             SocketAddress address = datagramChannel.receive(buffer);
+            if (address == null) {
+                return false;
+            }
             buffer.flip();
 
-            String message = new String(buffer.array(), 0, buffer.limit());
+            if (buffer.hasRemaining() && BinaryCodec.isBinary(buffer.get(0))) {
+                ByteBuffer response = handleBinaryRequest(buffer);
+                if (response != null) {
+                    try {
+                        datagramChannel.send(response,address);
+                    } finally {
+                        BufferPool.release(response);
+                    }
+                }
+                return true;
+            }
+            String message = BufferPool.toString(buffer);
             if (message.isEmpty()) {
                 LoggingUtil.logAsync(Level.SEVERE,"Received empty message from Load Balancer or Client.");
-                return;
+                return true;
             }
             LoggingUtil.logAsync(Level.INFO,"Received message from Load Balancer or Client :"+message);
             JsonObject responseMessageJson = handleJsonRequest(message);
             handleResponse(datagramChannel,address,responseMessageJson);
-
+            return true;
         } catch (IOException e) {
             LoggingUtil.logAsync(Level.SEVERE,"UDP Server Not Received on port " + port + " : " + e.getMessage());
+            return false;
         }
     }
+
+    public DrainCounter getDrainCounter() {
+        return drainCounter;
+    }
     private void stopServer() {
         try {
             if (selector != null && selector.isOpen()) {
@@ -142,7 +184,7 @@ public class UDPServer extends Server{
     public void registerLoadBalancer(){
         initialize();
         try {
-            createUdpRequest(MessageUtil.getServerRegisterMessage(getProtocol(),getPort(),getBackgroundPort()));
+            sendRegistration(true);
             LoggingUtil.logAsync(Level.INFO,"UDP Server connected to Load Balancer on port "+port);
             printAllState("register");
         }catch (IOException e){
@@ -153,7 +195,7 @@ public class UDPServer extends Server{
     public void unregisterLoadBalancer(){
         CompletableFuture<Void> future = CompletableFuture.runAsync(() -> {
             try {
-                createUdpRequest(MessageUtil.getServerUnRegisterMessage(getProtocol(), port, backgroundPort));
+                sendRegistration(false);
                 LoggingUtil.logAsync(Level.INFO,"Unregister message sent to Load Balancer for port " + port);
             } catch (IOException e) {
                 LoggingUtil.logAsync(Level.SEVERE,"Failed to send unregister message to Load Balancer: " + e.getMessage());
@@ -169,12 +211,51 @@ public class UDPServer extends Server{
         });
     }
 
-    private void createUdpRequest(String message) throws IOException{
+    @Override
+    public void updateWeight(int weight) {
+        setWeight(weight);
+        try {
+            if (BINARY_CONTROL) {
+                ByteBuffer frame = BinaryCodec.encodeRegistration(BinaryCodec.OP_SET_WEIGHT, 0, getProtocol(), port, backgroundPort, weight, getMaxConnections());
+                try {
+                    createUdpRequest(frame);
+                } finally {
+                    BufferPool.release(frame);
+                }
+            } else {
+                createUdpRequest(ByteBuffer.wrap(MessageUtil.getServerWeightMessage(getProtocol(), port, backgroundPort, weight, getMaxConnections()).getBytes()));
+            }
+            LoggingUtil.logAsync(Level.INFO,"Weight update sent to Load Balancer for port " + port + " : " + weight);
+        } catch (IOException e) {
+            LoggingUtil.logAsync(Level.SEVERE,"Failed to send weight update to Load Balancer: " + e.getMessage());
+        }
+    }
+
+    private void sendRegistration(boolean register) throws IOException {
+        if (BINARY_CONTROL) {
+            byte opcode = register ? BinaryCodec.OP_REGISTER : BinaryCodec.OP_UNREGISTER;
+            ByteBuffer frame = BinaryCodec.encodeRegistration(opcode, 0, getProtocol(), port, backgroundPort, getWeight(), getMaxConnections());
+            try {
+                createUdpRequest(frame);
+            } finally {
+                BufferPool.release(frame);
+            }
+        } else if (register) {
+            createUdpRequest(ByteBuffer.wrap(MessageUtil.getServerRegisterMessage(getProtocol(), port, backgroundPort, getWeight(), getMaxConnections()).getBytes()));
+        } else {
+            createUdpRequest(ByteBuffer.wrap(MessageUtil.getServerUnRegisterMessage(getProtocol(), port, backgroundPort).getBytes()));
+        }
+    }
+
+    private void createUdpRequest(ByteBuffer sendBuffer) throws IOException{
         DatagramChannel udpChannel = DatagramChannel.open();
         InetSocketAddress serverAddress = new InetSocketAddress("localhost",8080);
-        byte[] sendData = message.getBytes();
-        ByteBuffer sendBuffer = ByteBuffer.wrap(sendData);
         udpChannel.send(sendBuffer,serverAddress);
-        handleRequest(udpChannel);
+        ByteBuffer buffer = BufferPool.acquire(65536);
+        try {
+            handleRequest(udpChannel, buffer);
+        } finally {
+            BufferPool.release(buffer);
+        }
     }
 }
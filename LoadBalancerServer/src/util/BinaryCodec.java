@@ -0,0 +1,141 @@
+package util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary wire protocol, version 1. Every frame starts with a fixed 16-byte header:
+ * magic(1) version(1) opcode(1) flags(1) payloadLength(4) requestId(8).
+ * The magic byte can never start a legacy length-prefixed frame, so the first byte of a connection selects the protocol.
+ */
+public class BinaryCodec {
+
+    public static final byte MAGIC = (byte) 0xB1;
+    public static final byte VERSION = 1;
+    public static final int HEADER_LENGTH = 16;
+    public static final int LENGTH_OFFSET = 4;
+
+    public static final byte OP_LIST_SERVERS = 0x01;
+    public static final byte OP_CONNECT = 0x02;
+    public static final byte OP_FORWARD = 0x03;
+    public static final byte OP_STATS = 0x04;
+    public static final byte OP_REGISTER = 0x10;
+    public static final byte OP_UNREGISTER = 0x11;
+    public static final byte OP_HEALTH_CHECK = 0x12;
+    public static final byte OP_SET_WEIGHT = 0x13;
+    public static final byte OP_ACK = 0x20;
+    public static final byte OP_ERROR = 0x21;
+    public static final byte OP_RESPONSE = 0x22;
+
+    public static final byte FLAG_NONE = 0;
+
+    public static final int REGISTRATION_LENGTH = 9;
+    public static final int WEIGHTED_REGISTRATION_LENGTH = 17;
+
+    public static final byte PROTOCOL_TCP = 1;
+    public static final byte PROTOCOL_UDP = 2;
+    public static final byte PROTOCOL_HTTP = 3;
+
+    public static boolean isBinary(byte firstByte) {
+        return firstByte == MAGIC;
+    }
+
+    public static byte getVersion(ByteBuffer frame) {
+        return frame.get(frame.position() + 1);
+    }
+
+    public static byte getOpcode(ByteBuffer frame) {
+        return frame.get(frame.position() + 2);
+    }
+
+    public static byte getFlags(ByteBuffer frame) {
+        return frame.get(frame.position() + 3);
+    }
+
+    public static int getPayloadLength(ByteBuffer frame) {
+        return frame.getInt(frame.position() + LENGTH_OFFSET);
+    }
+
+    public static long getRequestId(ByteBuffer frame) {
+        return frame.getLong(frame.position() + 8);
+    }
+
+    public static ByteBuffer getPayload(ByteBuffer frame) {
+        return frame.slice(frame.position() + HEADER_LENGTH, getPayloadLength(frame));
+    }
+
+    public static byte getPayloadByte(ByteBuffer frame, int offset) {
+        return frame.get(frame.position() + HEADER_LENGTH + offset);
+    }
+
+    public static int getPayloadInt(ByteBuffer frame, int offset) {
+        return frame.getInt(frame.position() + HEADER_LENGTH + offset);
+    }
+
+    public static ByteBuffer encode(byte opcode, long requestId, ByteBuffer payload) {
+        ByteBuffer frame = BufferPool.acquire(HEADER_LENGTH + payload.remaining());
+        putHeader(frame, opcode, FLAG_NONE, payload.remaining(), requestId);
+        frame.put(payload).flip();
+        return frame;
+    }
+
+    public static ByteBuffer encode(byte opcode, long requestId, String message) {
+        return encode(opcode, requestId, ByteBuffer.wrap(message.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public static ByteBuffer encodeEmpty(byte opcode, long requestId) {
+        ByteBuffer frame = BufferPool.acquire(HEADER_LENGTH);
+        putHeader(frame, opcode, FLAG_NONE, 0, requestId);
+        return frame.flip();
+    }
+
+    public static ByteBuffer encodeInt(byte opcode, long requestId, int value) {
+        ByteBuffer frame = BufferPool.acquire(HEADER_LENGTH + 4);
+        putHeader(frame, opcode, FLAG_NONE, 4, requestId);
+        frame.putInt(value).flip();
+        return frame;
+    }
+
+    public static ByteBuffer encodeConnect(long requestId, String protocol) {
+        ByteBuffer frame = BufferPool.acquire(HEADER_LENGTH + 1);
+        putHeader(frame, OP_CONNECT, FLAG_NONE, 1, requestId);
+        frame.put(protocolCode(protocol)).flip();
+        return frame;
+    }
+
+    public static ByteBuffer encodeRegistration(byte opcode, long requestId, String protocol, int port, int backgroundPort) {
+        ByteBuffer frame = BufferPool.acquire(HEADER_LENGTH + REGISTRATION_LENGTH);
+        putHeader(frame, opcode, FLAG_NONE, REGISTRATION_LENGTH, requestId);
+        frame.put(protocolCode(protocol)).putInt(port).putInt(backgroundPort).flip();
+        return frame;
+    }
+
+    public static ByteBuffer encodeRegistration(byte opcode, long requestId, String protocol, int port, int backgroundPort, int weight, int maxConnections) {
+        ByteBuffer frame = BufferPool.acquire(HEADER_LENGTH + WEIGHTED_REGISTRATION_LENGTH);
+        putHeader(frame, opcode, FLAG_NONE, WEIGHTED_REGISTRATION_LENGTH, requestId);
+        frame.put(protocolCode(protocol)).putInt(port).putInt(backgroundPort).putInt(weight).putInt(maxConnections).flip();
+        return frame;
+    }
+
+    public static byte protocolCode(String protocol) {
+        return switch (protocol) {
+            case "tcp" -> PROTOCOL_TCP;
+            case "udp" -> PROTOCOL_UDP;
+            case "http" -> PROTOCOL_HTTP;
+            default -> throw new IllegalArgumentException("Unknown protocol: " + protocol);
+        };
+    }
+
+    public static String protocolName(byte code) {
+        return switch (code) {
+            case PROTOCOL_TCP -> "tcp";
+            case PROTOCOL_UDP -> "udp";
+            case PROTOCOL_HTTP -> "http";
+            default -> null;
+        };
+    }
+
+    private static void putHeader(ByteBuffer frame, byte opcode, byte flags, int payloadLength, long requestId) {
+        frame.put(MAGIC).put(VERSION).put(opcode).put(flags).putInt(payloadLength).putLong(requestId);
+    }
+}
@@ -0,0 +1,211 @@
+package util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
+/**
+ * Direct buffer pool with power-of-four size classes carved out of larger slabs.
+ * Each platform thread keeps a small cache per size class; buffers released on another thread go to a shared queue.
+ * Virtual threads are short-lived and numerous, so they skip the cache and use the shared queues directly.
+ * Set lb.buffer.leakDetection=true to record where every outstanding buffer was acquired.
+ */
+public class BufferPool {
+
+    private static final int[] SIZE_CLASSES = {1024, 4096, 16384, 65536};
+    private static final int BUFFERS_PER_SLAB = ConfigUtil.getInt("lb.buffer.buffersPerSlab", 64);
+    private static final int THREAD_CACHE_SIZE = ConfigUtil.getInt("lb.buffer.threadCacheSize", 32);
+    private static final boolean LEAK_DETECTION = Boolean.getBoolean("lb.buffer.leakDetection");
+
+    private static final SizeClass[] sizeClasses = new SizeClass[SIZE_CLASSES.length];
+    private static final ThreadLocal<ArrayDeque<ByteBuffer>[]> threadCaches = ThreadLocal.withInitial(BufferPool::newThreadCache);
+    private static final Map<ByteBuffer, Throwable> outstandingLeases = Collections.synchronizedMap(new IdentityHashMap<>());
+
+    private static final LongAdder leaseCount = new LongAdder();
+    private static final LongAdder releaseCount = new LongAdder();
+    private static final LongAdder threadCacheHits = new LongAdder();
+    private static final LongAdder oversizedCount = new LongAdder();
+
+    static {
+        for (int i = 0; i < SIZE_CLASSES.length; i++) {
+            sizeClasses[i] = new SizeClass(SIZE_CLASSES[i]);
+        }
+    }
+
+    public static ByteBuffer acquire(int minCapacity) {
+        leaseCount.increment();
+        int index = sizeClassIndex(minCapacity);
+        ByteBuffer buffer;
+        if (index < 0) {
+            oversizedCount.increment();
+            buffer = ByteBuffer.allocateDirect(minCapacity);
+        } else {
+            buffer = Thread.currentThread().isVirtual() ? null : threadCaches.get()[index].pollFirst();
+            if (buffer != null) {
+                threadCacheHits.increment();
+            } else {
+                buffer = sizeClasses[index].acquire();
+            }
+            buffer.clear();
+        }
+        if (LEAK_DETECTION) {
+            outstandingLeases.put(buffer, new Throwable("Buffer acquired here"));
+        }
+        return buffer;
+    }
+
+    public static void release(ByteBuffer buffer) {
+        if (buffer == null) {
+            return;
+        }
+        if (LEAK_DETECTION && outstandingLeases.remove(buffer) == null) {
+            LoggingUtil.logAsync(Level.SEVERE,"Buffer released twice or not acquired from pool: " + buffer);
+            return;
+        }
+        releaseCount.increment();
+        int index = exactSizeClassIndex(buffer);
+        if (index < 0) {
+            return;
+        }
+        if (Thread.currentThread().isVirtual()) {
+            sizeClasses[index].release(buffer);
+            return;
+        }
+        ArrayDeque<ByteBuffer> threadCache = threadCaches.get()[index];
+        if (threadCache.size() < THREAD_CACHE_SIZE) {
+            threadCache.offerFirst(buffer);
+        } else {
+            sizeClasses[index].release(buffer);
+        }
+    }
+
+    public static String toString(ByteBuffer buffer) {
+        return StandardCharsets.UTF_8.decode(buffer).toString();
+    }
+
+    public static long getLeaseCount() {
+        return leaseCount.sum();
+    }
+
+    public static long getReleaseCount() {
+        return releaseCount.sum();
+    }
+
+    public static long getOutstandingCount() {
+        return leaseCount.sum() - releaseCount.sum();
+    }
+
+    public static long getThreadCacheHitCount() {
+        return threadCacheHits.sum();
+    }
+
+    public static long getOversizedCount() {
+        return oversizedCount.sum();
+    }
+
+    public static long getSlabBytes() {
+        long total = 0;
+        for (SizeClass sizeClass : sizeClasses) {
+            total += sizeClass.getSlabBytes();
+        }
+        return total;
+    }
+
+    public static String getStats() {
+        return "leases=" + getLeaseCount() +
+                " releases=" + getReleaseCount() +
+                " outstanding=" + getOutstandingCount() +
+                " threadCacheHits=" + getThreadCacheHitCount() +
+                " oversized=" + getOversizedCount() +
+                " slabBytes=" + getSlabBytes();
+    }
+
+    public static void reportLeaks() {
+        if (!LEAK_DETECTION) {
+            LoggingUtil.logAsync(Level.INFO,"Buffer pool " + getStats());
+            return;
+        }
+        synchronized (outstandingLeases) {
+            for (Throwable origin : outstandingLeases.values()) {
+                StringBuilder trace = new StringBuilder("Outstanding buffer lease");
+                for (StackTraceElement element : origin.getStackTrace()) {
+                    trace.append("\n\tat ").append(element);
+                }
+                LoggingUtil.logAsync(Level.WARNING,trace.toString());
+            }
+        }
+    }
+
+    private static int sizeClassIndex(int minCapacity) {
+        for (int i = 0; i < SIZE_CLASSES.length; i++) {
+            if (minCapacity <= SIZE_CLASSES[i]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int exactSizeClassIndex(ByteBuffer buffer) {
+        if (!buffer.isDirect()) {
+            return -1;
+        }
+        for (int i = 0; i < SIZE_CLASSES.length; i++) {
+            if (buffer.capacity() == SIZE_CLASSES[i]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static ArrayDeque<ByteBuffer>[] newThreadCache() {
+        ArrayDeque<ByteBuffer>[] cache = new ArrayDeque[SIZE_CLASSES.length];
+        for (int i = 0; i < cache.length; i++) {
+            cache[i] = new ArrayDeque<>(THREAD_CACHE_SIZE);
+        }
+        return cache;
+    }
+
+    private static class SizeClass {
+
+        private final int bufferSize;
+        private final ConcurrentLinkedQueue<ByteBuffer> sharedBuffers = new ConcurrentLinkedQueue<>();
+        private final LongAdder slabBytes = new LongAdder();
+        private ByteBuffer currentSlab;
+
+        private SizeClass(int bufferSize) {
+            this.bufferSize = bufferSize;
+        }
+
+        private ByteBuffer acquire() {
+            ByteBuffer buffer = sharedBuffers.poll();
+            return buffer != null ? buffer : carve();
+        }
+
+        private void release(ByteBuffer buffer) {
+            sharedBuffers.offer(buffer);
+        }
+
+        private synchronized ByteBuffer carve() {
+            if (currentSlab == null || currentSlab.remaining() < bufferSize) {
+                currentSlab = ByteBuffer.allocateDirect(bufferSize * BUFFERS_PER_SLAB);
+                slabBytes.add((long) bufferSize * BUFFERS_PER_SLAB);
+            }
+            currentSlab.limit(currentSlab.position() + bufferSize);
+            ByteBuffer buffer = currentSlab.slice();
+            currentSlab.position(currentSlab.limit());
+            currentSlab.limit(currentSlab.capacity());
+            return buffer;
+        }
+
+        private long getSlabBytes() {
+            return slabBytes.sum();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package util;
+
+import java.util.logging.Level;
+
+public class ConfigUtil {
+
+    public static int getInt(String key, int defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            LoggingUtil.logAsync(Level.WARNING,"Invalid value for " + key + " : " + value);
+            return defaultValue;
+        }
+    }
+
+    public static long getLong(String key, long defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            LoggingUtil.logAsync(Level.WARNING,"Invalid value for " + key + " : " + value);
+            return defaultValue;
+        }
+    }
+
+    public static String getString(String key, String defaultValue) {
+        return System.getProperty(key, defaultValue);
+    }
+}
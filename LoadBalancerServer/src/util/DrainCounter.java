@@ -0,0 +1,31 @@
+package util;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how many datagrams a socket loop drains per selector wakeup, and how often it stops at its budget.
+ */
+public class DrainCounter {
+
+    private final LongAdder wakeups = new LongAdder();
+    private final LongAdder datagrams = new LongAdder();
+    private final LongAdder budgetHits = new LongAdder();
+
+    public void record(int drained, boolean budgetExhausted) {
+        wakeups.increment();
+        datagrams.add(drained);
+        if (budgetExhausted) {
+            budgetHits.increment();
+        }
+    }
+
+    public double getDatagramsPerWakeup() {
+        long count = wakeups.sum();
+        return count == 0 ? 0 : (double) datagrams.sum() / count;
+    }
+
+    public String getStats() {
+        return String.format("wakeups=%d datagrams=%d perWakeup=%.2f budgetHits=%d",
+                wakeups.sum(), datagrams.sum(), getDatagramsPerWakeup(), budgetHits.sum());
+    }
+}
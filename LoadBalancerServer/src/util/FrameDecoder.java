@@ -0,0 +1,163 @@
+package util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Reassembles frames from a stream connection. The first byte received selects the protocol for the whole connection:
+ * legacy 4-byte length-prefixed text frames (payload only is returned), {@link BinaryCodec} frames (header included)
+ * or HTTP/1.x messages (the raw message is returned and described by {@link #getHttpParser()}).
+ * A frame returned by {@link #nextFrame()} is a view into the accumulation buffer and is only valid until the next call to read or nextFrame.
+ */
+public class FrameDecoder {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private ByteBuffer buffer = BufferPool.acquire(INITIAL_CAPACITY);
+    private int readIndex = 0;
+    private boolean negotiated = false;
+    private boolean binary = false;
+    private boolean http = false;
+    private HttpParser httpParser;
+
+    public int read(ReadableByteChannel channel) throws IOException {
+        if (!buffer.hasRemaining()) {
+            if (readIndex > 0) {
+                compact();
+            } else {
+                grow(buffer.capacity() * 2);
+            }
+        }
+        return channel.read(buffer);
+    }
+
+    public ByteBuffer nextFrame() throws IOException {
+        if (!negotiate()) {
+            compact();
+            return null;
+        }
+        int available = buffer.position() - readIndex;
+        if (http) {
+            return nextHttpMessage();
+        }
+        int headerLength = binary ? BinaryCodec.HEADER_LENGTH : FrameUtil.HEADER_LENGTH;
+        if (available < headerLength) {
+            compact();
+            return null;
+        }
+        if (binary && buffer.get(readIndex) != BinaryCodec.MAGIC) {
+            throw new IOException("Invalid binary frame magic");
+        }
+        int length = buffer.getInt(readIndex + (binary ? BinaryCodec.LENGTH_OFFSET : 0));
+        if (length < 0 || length > FrameUtil.MAX_FRAME_LENGTH) {
+            throw new IOException("Invalid frame length: " + length);
+        }
+        if (available < headerLength + length) {
+            compact();
+            if (buffer.capacity() < headerLength + length) {
+                grow(headerLength + length);
+            }
+            return null;
+        }
+        ByteBuffer frame = binary
+                ? buffer.slice(readIndex, headerLength + length)
+                : buffer.slice(readIndex + headerLength, length);
+        readIndex += headerLength + length;
+        return frame;
+    }
+
+    /**
+     * Selects the protocol from the first byte received, if it has arrived; returns whether the protocol is known.
+     */
+    public boolean negotiate() {
+        if (!negotiated && buffer.position() > readIndex) {
+            binary = BinaryCodec.isBinary(buffer.get(readIndex));
+            http = HttpParser.isHttpStart(buffer.get(readIndex));
+            negotiated = true;
+        }
+        return negotiated;
+    }
+
+    public boolean isBinary() {
+        return binary;
+    }
+
+    public boolean isHttp() {
+        return http;
+    }
+
+    public HttpParser getHttpParser() {
+        if (httpParser == null) {
+            httpParser = new HttpParser();
+        }
+        return httpParser;
+    }
+
+    /**
+     * Called once the peer has closed the stream: returns an HTTP response whose body was delimited by the close, or null.
+     */
+    public ByteBuffer endOfStream() {
+        if (!http) {
+            return null;
+        }
+        int length = httpParser.endOfInput(buffer, readIndex, buffer.position());
+        if (length < 0) {
+            return null;
+        }
+        readIndex += length;
+        return httpParser.getMessage();
+    }
+
+    public boolean isEmpty() {
+        return buffer.position() == readIndex;
+    }
+
+    public void release() {
+        if (buffer != null) {
+            BufferPool.release(buffer);
+            buffer = null;
+        }
+    }
+
+    private ByteBuffer nextHttpMessage() throws IOException {
+        HttpParser parser = getHttpParser();
+        if (!parser.isInProgress()) {
+            // Some clients send a stray CRLF after a request body.
+            while (readIndex < buffer.position() && (buffer.get(readIndex) == '\r' || buffer.get(readIndex) == '\n')) {
+                readIndex++;
+            }
+        }
+        int length = parser.parse(buffer, readIndex, buffer.position());
+        if (length < 0) {
+            compact();
+            return null;
+        }
+        readIndex += length;
+        return parser.getMessage();
+    }
+
+    private void compact() {
+        if (readIndex == 0) {
+            return;
+        }
+        buffer.limit(buffer.position());
+        buffer.position(readIndex);
+        buffer.compact();
+        readIndex = 0;
+        if (buffer.position() == 0 && buffer.capacity() > INITIAL_CAPACITY) {
+            BufferPool.release(buffer);
+            buffer = BufferPool.acquire(INITIAL_CAPACITY);
+        }
+    }
+
+    private void grow(int minCapacity) {
+        ByteBuffer grown = BufferPool.acquire(Math.max(minCapacity, buffer.capacity() * 2));
+        buffer.flip();
+        buffer.position(readIndex);
+        grown.put(buffer);
+        BufferPool.release(buffer);
+        buffer = grown;
+        readIndex = 0;
+    }
+}
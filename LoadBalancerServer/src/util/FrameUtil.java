@@ -0,0 +1,62 @@
+package util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+public class FrameUtil {
+
+    public static final int HEADER_LENGTH = 4;
+    public static final int MAX_FRAME_LENGTH = ConfigUtil.getInt("lb.frame.maxLength", 16 * 1024 * 1024);
+
+    public static ByteBuffer encode(byte[] payload) {
+        ByteBuffer frame = BufferPool.acquire(HEADER_LENGTH + payload.length);
+        frame.putInt(payload.length).put(payload).flip();
+        return frame;
+    }
+
+    public static ByteBuffer encode(ByteBuffer payload) {
+        ByteBuffer frame = BufferPool.acquire(HEADER_LENGTH + payload.remaining());
+        frame.putInt(payload.remaining()).put(payload).flip();
+        return frame;
+    }
+
+    public static ByteBuffer encode(String message) {
+        return encode(message.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static void writeFrame(WritableByteChannel channel, String message) throws IOException {
+        ByteBuffer frame = encode(message);
+        try {
+            while (frame.hasRemaining()) {
+                if (channel.write(frame) == 0) {
+                    Thread.onSpinWait();
+                }
+            }
+        } finally {
+            BufferPool.release(frame);
+        }
+    }
+
+    public static String readFrame(ReadableByteChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        readFully(channel, header);
+        int length = header.flip().getInt();
+        if (length < 0 || length > MAX_FRAME_LENGTH) {
+            throw new IOException("Invalid frame length: " + length);
+        }
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        readFully(channel, payload);
+        return new String(payload.array(), 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static void readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) == -1) {
+                throw new IOException("Connection closed while reading frame");
+            }
+        }
+    }
+}
@@ -0,0 +1,586 @@
+package util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Incremental HTTP/1.1 request and response parser that works in place on the bytes of a {@link ByteBuffer}.
+ * {@link #parse} can be called again whenever more bytes arrive; it resumes where it stopped, and the message may be
+ * moved between calls as long as it is passed with its new start offset. Header and start-line positions are kept as
+ * offsets into the message, so strings are only created when an accessor asks for one.
+ * Bodies are delimited by Content-Length, chunked transfer coding, or (responses only) the end of the connection.
+ * An instance parses one message at a time and is reused for the next one on the same connection.
+ */
+public class HttpParser {
+
+    public static final int MAX_HEAD_LENGTH = ConfigUtil.getInt("http.maxHeadLength", 64 * 1024);
+    public static final int MAX_HEADERS = ConfigUtil.getInt("http.maxHeaders", 100);
+
+    private static final byte[] HTTP_PREFIX = ascii("HTTP/1.");
+    private static final byte[] CONTENT_LENGTH = ascii("content-length");
+    private static final byte[] TRANSFER_ENCODING = ascii("transfer-encoding");
+    private static final byte[] CONNECTION = ascii("connection");
+    private static final byte[] CHUNKED = ascii("chunked");
+    private static final byte[] CLOSE = ascii("close");
+    private static final byte[] KEEP_ALIVE = ascii("keep-alive");
+
+    private enum State { HEAD, BODY, CHUNK_SIZE, CHUNK_DATA, TRAILERS, UNTIL_CLOSE, DONE }
+
+    private State state = State.HEAD;
+    private int scanned;
+    private int lineStart;
+    private long remaining;
+
+    private ByteBuffer message;
+    private boolean response;
+    private boolean responseToHead;
+    private int headLength;
+    private int minorVersion;
+    private int status;
+    private int methodEnd;
+    private int targetStart;
+    private int targetEnd;
+    private long contentLength = -1;
+    private boolean chunked;
+    private boolean keepAlive;
+    private final int[] headers = new int[MAX_HEADERS * 4];
+    private int headerCount;
+
+    /**
+     * Requests start with an upper-case method token and responses with "HTTP/", so an ASCII capital letter
+     * distinguishes HTTP from both legacy length-prefixed frames and binary frames.
+     */
+    public static boolean isHttpStart(byte firstByte) {
+        return firstByte >= 'A' && firstByte <= 'Z';
+    }
+
+    /**
+     * Continues parsing the message that starts at {@code start}, with bytes available up to {@code end}.
+     * Returns the length of the message once it is complete, or -1 when more bytes are needed.
+     * A completed message is exposed by {@link #getMessage()} and the accessors until the next call starts a new one.
+     */
+    public int parse(ByteBuffer buffer, int start, int end) throws IOException {
+        if (state == State.DONE) {
+            reset();
+        }
+        int available = end - start;
+        boolean headSliced = false;
+        while (true) {
+            switch (state) {
+                case HEAD -> {
+                    if (!scanHead(buffer, start, available)) {
+                        return -1;
+                    }
+                    parseHead(buffer, start);
+                    headSliced = true;
+                }
+                case BODY -> {
+                    int consumed = (int) Math.min(remaining, available - scanned);
+                    scanned += consumed;
+                    remaining -= consumed;
+                    if (remaining > 0) {
+                        return -1;
+                    }
+                    state = State.DONE;
+                }
+                case CHUNK_SIZE -> {
+                    int lineEnd = findLineEnd(buffer, start, available);
+                    if (lineEnd < 0) {
+                        return -1;
+                    }
+                    long size = parseChunkSize(buffer, start + lineStart, start + lineEnd);
+                    scanned = lineEnd + 1;
+                    lineStart = scanned;
+                    if (size == 0) {
+                        state = State.TRAILERS;
+                    } else {
+                        checkLength((long) scanned + size + 2);
+                        remaining = size + 2;
+                        state = State.CHUNK_DATA;
+                    }
+                }
+                case CHUNK_DATA -> {
+                    int consumed = (int) Math.min(remaining, available - scanned);
+                    scanned += consumed;
+                    remaining -= consumed;
+                    if (remaining > 0) {
+                        return -1;
+                    }
+                    if (buffer.get(start + scanned - 2) != '\r' || buffer.get(start + scanned - 1) != '\n') {
+                        throw new IOException("Chunk data not followed by CRLF");
+                    }
+                    lineStart = scanned;
+                    state = State.CHUNK_SIZE;
+                }
+                case TRAILERS -> {
+                    int lineEnd = findLineEnd(buffer, start, available);
+                    if (lineEnd < 0) {
+                        return -1;
+                    }
+                    boolean empty = isEmptyLine(buffer, start + lineStart, start + lineEnd);
+                    scanned = lineEnd + 1;
+                    lineStart = scanned;
+                    if (empty) {
+                        state = State.DONE;
+                    }
+                }
+                case UNTIL_CLOSE -> {
+                    checkLength(available);
+                    scanned = available;
+                    return -1;
+                }
+                case DONE -> {
+                    // A bodiless message completed in this call already has its slice.
+                    if (!headSliced || scanned != headLength) {
+                        message = buffer.slice(start, scanned);
+                    }
+                    return scanned;
+                }
+            }
+        }
+    }
+
+    /**
+     * Completes a response whose body runs until the connection closes; returns its length, or -1 if the
+     * message was cut short instead.
+     */
+    public int endOfInput(ByteBuffer buffer, int start, int end) {
+        if (state != State.UNTIL_CLOSE) {
+            return -1;
+        }
+        scanned = end - start;
+        state = State.DONE;
+        message = buffer.slice(start, scanned);
+        return scanned;
+    }
+
+    /**
+     * Responses to HEAD carry headers but never a body; the parser cannot tell them apart on its own.
+     */
+    public void setResponseToHead(boolean responseToHead) {
+        this.responseToHead = responseToHead;
+    }
+
+    public boolean isInProgress() {
+        return state != State.DONE && scanned > 0;
+    }
+
+    public void reset() {
+        state = State.HEAD;
+        scanned = 0;
+        lineStart = 0;
+        remaining = 0;
+        message = null;
+        headerCount = 0;
+        contentLength = -1;
+        chunked = false;
+        keepAlive = false;
+        status = 0;
+    }
+
+    public ByteBuffer getMessage() {
+        return message;
+    }
+
+    public boolean isResponse() {
+        return response;
+    }
+
+    public int getMinorVersion() {
+        return minorVersion;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public String getMethod() {
+        return response ? null : ascii(0, methodEnd);
+    }
+
+    public boolean isMethod(String method) {
+        return !response && regionEquals(0, methodEnd, method);
+    }
+
+    public String getTarget() {
+        return response ? null : ascii(targetStart, targetEnd);
+    }
+
+    public boolean isKeepAlive() {
+        return keepAlive;
+    }
+
+    public boolean isChunked() {
+        return chunked;
+    }
+
+    /**
+     * The declared Content-Length, or -1 when the body is chunked, delimited by close, or absent.
+     */
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    public int getHeadLength() {
+        return headLength;
+    }
+
+    public int getHeaderCount() {
+        return headerCount;
+    }
+
+    public String getHeaderName(int index) {
+        return ascii(headers[index * 4], headers[index * 4 + 1]);
+    }
+
+    public String getHeaderValue(int index) {
+        return ascii(headers[index * 4 + 2], headers[index * 4 + 3]);
+    }
+
+    /**
+     * The value of the first header with the given name, compared case-insensitively, or null.
+     */
+    public String getHeader(String name) {
+        byte[] lowerName = ascii(name.toLowerCase());
+        for (int i = 0; i < headerCount; i++) {
+            if (nameEquals(message, 0, i, lowerName)) {
+                return getHeaderValue(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Copies the decoded body into a pooled buffer that the caller releases; chunked bodies are de-chunked.
+     */
+    public ByteBuffer copyBody() {
+        int bodyLength = message.limit() - headLength;
+        ByteBuffer body = BufferPool.acquire(Math.max(1, bodyLength));
+        if (!chunked) {
+            body.put(message.slice(headLength, bodyLength)).flip();
+            return body;
+        }
+        int position = headLength;
+        while (true) {
+            int lineEnd = position;
+            while (message.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            int size;
+            try {
+                size = (int) parseChunkSize(message, position, lineEnd);
+            } catch (IOException e) {
+                // The message already parsed once, so this cannot happen.
+                throw new IllegalStateException(e);
+            }
+            if (size == 0) {
+                break;
+            }
+            body.put(message.slice(lineEnd + 1, size));
+            position = lineEnd + 1 + size + 2;
+        }
+        return body.flip();
+    }
+
+    private boolean scanHead(ByteBuffer buffer, int start, int available) throws IOException {
+        for (int i = scanned; i < available; i++) {
+            if (buffer.get(start + i) != '\n') {
+                continue;
+            }
+            boolean empty = isEmptyLine(buffer, start + lineStart, start + i);
+            lineStart = i + 1;
+            if (empty) {
+                scanned = lineStart;
+                headLength = lineStart;
+                return true;
+            }
+        }
+        scanned = available;
+        if (available > MAX_HEAD_LENGTH) {
+            throw new IOException("HTTP head larger than " + MAX_HEAD_LENGTH + " bytes");
+        }
+        return false;
+    }
+
+    private void parseHead(ByteBuffer buffer, int start) throws IOException {
+        message = buffer.slice(start, headLength);
+        int lineEnd = indexOf(message, 0, headLength, '\n');
+        parseStartLine(trimCr(message, lineEnd));
+        int position = lineEnd + 1;
+        boolean hasContentLength = false;
+        boolean closeToken = false;
+        boolean keepAliveToken = false;
+        while (true) {
+            lineEnd = indexOf(message, position, headLength, '\n');
+            int end = trimCr(message, lineEnd);
+            if (end == position) {
+                break;
+            }
+            if (headerCount == MAX_HEADERS) {
+                throw new IOException("More than " + MAX_HEADERS + " HTTP headers");
+            }
+            int colon = indexOf(message, position, end, ':');
+            if (colon <= position || colon == end || isWhitespace(message.get(position)) || isWhitespace(message.get(colon - 1))) {
+                throw new IOException("Malformed HTTP header line");
+            }
+            int valueStart = colon + 1;
+            while (valueStart < end && isWhitespace(message.get(valueStart))) {
+                valueStart++;
+            }
+            int valueEnd = end;
+            while (valueEnd > valueStart && isWhitespace(message.get(valueEnd - 1))) {
+                valueEnd--;
+            }
+            int index = headerCount++;
+            headers[index * 4] = position;
+            headers[index * 4 + 1] = colon;
+            headers[index * 4 + 2] = valueStart;
+            headers[index * 4 + 3] = valueEnd;
+            if (nameEquals(message, 0, index, CONTENT_LENGTH)) {
+                long length = parseDecimal(message, valueStart, valueEnd);
+                if (hasContentLength && length != contentLength) {
+                    throw new IOException("Conflicting Content-Length headers");
+                }
+                hasContentLength = true;
+                contentLength = length;
+            } else if (nameEquals(message, 0, index, TRANSFER_ENCODING)) {
+                // Only the final coding decides the framing.
+                chunked = endsWithToken(message, valueStart, valueEnd, CHUNKED);
+                if (!chunked) {
+                    throw new IOException("Unsupported Transfer-Encoding");
+                }
+            } else if (nameEquals(message, 0, index, CONNECTION)) {
+                closeToken |= containsToken(message, valueStart, valueEnd, CLOSE);
+                keepAliveToken |= containsToken(message, valueStart, valueEnd, KEEP_ALIVE);
+            }
+            position = lineEnd + 1;
+        }
+        if (chunked && hasContentLength) {
+            // A proxy that honours either one alone can be used to smuggle requests.
+            throw new IOException("Both Content-Length and chunked Transfer-Encoding present");
+        }
+        keepAlive = minorVersion == 1 ? !closeToken : keepAliveToken && !closeToken;
+        scanned = headLength;
+        lineStart = headLength;
+        if (response && (responseToHead || status / 100 == 1 || status == 204 || status == 304)) {
+            contentLength = -1;
+            chunked = false;
+            state = State.DONE;
+        } else if (chunked) {
+            state = State.CHUNK_SIZE;
+        } else if (hasContentLength) {
+            checkLength(headLength + contentLength);
+            remaining = contentLength;
+            state = State.BODY;
+        } else if (response) {
+            keepAlive = false;
+            state = State.UNTIL_CLOSE;
+        } else {
+            state = State.DONE;
+        }
+    }
+
+    private void parseStartLine(int end) throws IOException {
+        response = startsWith(message, 0, end, HTTP_PREFIX);
+        if (response) {
+            // HTTP/1.x SP 3DIGIT SP reason-phrase
+            if (end < 12 || message.get(8) != ' ' || (end > 12 && message.get(12) != ' ')) {
+                throw new IOException("Malformed HTTP status line");
+            }
+            minorVersion = parseMinorVersion(7);
+            status = (int) parseDecimal(message, 9, 12);
+            return;
+        }
+        methodEnd = indexOf(message, 0, end, ' ');
+        targetStart = methodEnd + 1;
+        targetEnd = indexOf(message, targetStart, end, ' ');
+        if (methodEnd <= 0 || targetEnd == end || targetEnd == targetStart || end - targetEnd != 9
+                || !startsWith(message, targetEnd + 1, end, HTTP_PREFIX)) {
+            throw new IOException("Malformed HTTP request line");
+        }
+        minorVersion = parseMinorVersion(targetEnd + 8);
+    }
+
+    private int parseMinorVersion(int index) throws IOException {
+        byte digit = message.get(index);
+        if (digit != '0' && digit != '1') {
+            throw new IOException("Unsupported HTTP version");
+        }
+        return digit - '0';
+    }
+
+    private int findLineEnd(ByteBuffer buffer, int start, int available) throws IOException {
+        for (int i = scanned; i < available; i++) {
+            if (buffer.get(start + i) == '\n') {
+                return i;
+            }
+        }
+        scanned = available;
+        if (available - lineStart > MAX_HEAD_LENGTH) {
+            throw new IOException("HTTP chunk line too long");
+        }
+        return -1;
+    }
+
+    private static long parseChunkSize(ByteBuffer buffer, int start, int end) throws IOException {
+        long size = 0;
+        int digits = 0;
+        for (int i = start; i < end; i++) {
+            byte b = buffer.get(i);
+            int value = Character.digit(b, 16);
+            if (value < 0) {
+                if (b == ';' || b == '\r' || isWhitespace(b)) {
+                    break;
+                }
+                throw new IOException("Malformed chunk size");
+            }
+            if (++digits > 15) {
+                throw new IOException("Chunk size too large");
+            }
+            size = size * 16 + value;
+        }
+        if (digits == 0) {
+            throw new IOException("Missing chunk size");
+        }
+        return size;
+    }
+
+    private static long parseDecimal(ByteBuffer buffer, int start, int end) throws IOException {
+        if (start == end || end - start > 18) {
+            throw new IOException("Malformed HTTP number");
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b < '0' || b > '9') {
+                throw new IOException("Malformed HTTP number");
+            }
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+
+    private static void checkLength(long length) throws IOException {
+        if (length > FrameUtil.MAX_FRAME_LENGTH) {
+            throw new IOException("HTTP message larger than " + FrameUtil.MAX_FRAME_LENGTH + " bytes");
+        }
+    }
+
+    private boolean nameEquals(ByteBuffer buffer, int base, int index, byte[] lowerName) {
+        int start = base + headers[index * 4];
+        int end = base + headers[index * 4 + 1];
+        if (end - start != lowerName.length) {
+            return false;
+        }
+        for (int i = 0; i < lowerName.length; i++) {
+            if (toLower(buffer.get(start + i)) != lowerName[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean containsToken(ByteBuffer buffer, int start, int end, byte[] token) {
+        int tokenStart = start;
+        for (int i = start; i <= end; i++) {
+            if (i == end || buffer.get(i) == ',') {
+                int s = tokenStart;
+                int e = i;
+                while (s < e && isWhitespace(buffer.get(s))) {
+                    s++;
+                }
+                while (e > s && isWhitespace(buffer.get(e - 1))) {
+                    e--;
+                }
+                if (equalsIgnoreCase(buffer, s, e, token)) {
+                    return true;
+                }
+                tokenStart = i + 1;
+            }
+        }
+        return false;
+    }
+
+    private static boolean endsWithToken(ByteBuffer buffer, int start, int end, byte[] token) {
+        int tokenStart = end;
+        while (tokenStart > start && buffer.get(tokenStart - 1) != ',') {
+            tokenStart--;
+        }
+        while (tokenStart < end && isWhitespace(buffer.get(tokenStart))) {
+            tokenStart++;
+        }
+        return equalsIgnoreCase(buffer, tokenStart, end, token);
+    }
+
+    private static boolean equalsIgnoreCase(ByteBuffer buffer, int start, int end, byte[] lowerToken) {
+        if (end - start != lowerToken.length) {
+            return false;
+        }
+        for (int i = 0; i < lowerToken.length; i++) {
+            if (toLower(buffer.get(start + i)) != lowerToken[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean startsWith(ByteBuffer buffer, int start, int end, byte[] prefix) {
+        if (end - start < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer.get(start + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean regionEquals(int start, int end, String value) {
+        if (end - start != value.length()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (message.get(start + i) != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isEmptyLine(ByteBuffer buffer, int start, int lineFeed) {
+        return lineFeed == start || (lineFeed == start + 1 && buffer.get(start) == '\r');
+    }
+
+    private static int indexOf(ByteBuffer buffer, int start, int end, char c) {
+        for (int i = start; i < end; i++) {
+            if (buffer.get(i) == c) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    private static int trimCr(ByteBuffer buffer, int lineFeed) {
+        return lineFeed > 0 && buffer.get(lineFeed - 1) == '\r' ? lineFeed - 1 : lineFeed;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    private static byte toLower(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte) (b + 32) : b;
+    }
+
+    private String ascii(int start, int end) {
+        byte[] bytes = new byte[end - start];
+        message.get(start, bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,43 @@
+package util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+public class HttpUtil {
+
+    public static ByteBuffer encodeResponse(int status, String contentType, String body, boolean keepAlive) {
+        return encodeResponse(status, contentType, body.getBytes(StandardCharsets.UTF_8), keepAlive, true);
+    }
+
+    /**
+     * Encodes a complete HTTP/1.1 response into a pooled buffer. With {@code includeBody} false the headers still
+     * announce the body's length, as a response to HEAD must.
+     */
+    public static ByteBuffer encodeResponse(int status, String contentType, byte[] body, boolean keepAlive, boolean includeBody) {
+        String head = "HTTP/1.1 " + status + " " + getReasonPhrase(status) + "\r\n" +
+                "Content-Type: " + contentType + "\r\n" +
+                "Content-Length: " + body.length + "\r\n" +
+                "Connection: " + (keepAlive ? "keep-alive" : "close") + "\r\n" +
+                "\r\n";
+        byte[] headBytes = head.getBytes(StandardCharsets.ISO_8859_1);
+        ByteBuffer response = BufferPool.acquire(headBytes.length + (includeBody ? body.length : 0));
+        response.put(headBytes);
+        if (includeBody) {
+            response.put(body);
+        }
+        return response.flip();
+    }
+
+    public static String getReasonPhrase(int status) {
+        return switch (status) {
+            case 200 -> "OK";
+            case 400 -> "Bad Request";
+            case 404 -> "Not Found";
+            case 501 -> "Not Implemented";
+            case 502 -> "Bad Gateway";
+            case 503 -> "Service Unavailable";
+            case 504 -> "Gateway Timeout";
+            default -> "Unknown";
+        };
+    }
+}
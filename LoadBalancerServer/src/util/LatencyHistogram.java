@@ -0,0 +1,122 @@
+package util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-bucket log-linear histogram of durations in nanoseconds.
+ * Every power of two is split into 8 linear sub-buckets, so a bucket is at most 12.5% wide; values beyond about
+ * 18 minutes land in the last bucket. Similar latencies fall into the same few buckets, so the counts are striped
+ * by recording thread, one full row of buckets per stripe, and summed on read. Recording is one array increment
+ * and never allocates. Reads are not atomic across buckets, which is fine for monitoring.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+    // The power of two at or above the core count, capped so a histogram stays a few tens of KB.
+    private static final int STRIPES = Math.min(16, Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)) << 1);
+
+    private final AtomicLongArray counts = new AtomicLongArray(STRIPES * BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumNanos = new LongAdder();
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(stripeOffset() + bucketOf(value));
+        count.increment();
+        sumNanos.add(value);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getMeanNanos() {
+        long samples = count.sum();
+        return samples == 0 ? 0 : (double) sumNanos.sum() / samples;
+    }
+
+    public long getSumNanos() {
+        return sumNanos.sum();
+    }
+
+    /**
+     * Fills {@code counts} with how many samples fell at or below each of the ascending {@code boundsNanos}, as
+     * cumulative Prometheus buckets do, and returns the total. A fine bucket counts towards a bound once its whole
+     * range is below it, so a bound may undercount by at most one fine bucket.
+     */
+    public long getCumulativeCounts(long[] boundsNanos, long[] counts) {
+        long total = 0;
+        int bound = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            while (bound < boundsNanos.length && upperBoundOf(i) > boundsNanos[bound]) {
+                counts[bound++] = total;
+            }
+            total += countOf(i);
+        }
+        while (bound < boundsNanos.length) {
+            counts[bound++] = total;
+        }
+        return total;
+    }
+
+    /**
+     * Upper bound of the bucket holding the given quantile (0 to 1), or 0 if nothing was recorded.
+     */
+    public long getValueAtQuantile(double quantile) {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += countOf(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * quantile));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += countOf(i);
+            if (seen >= rank) {
+                return upperBoundOf(i);
+            }
+        }
+        return upperBoundOf(BUCKETS - 1);
+    }
+
+    private long countOf(int bucket) {
+        long total = 0;
+        for (int offset = bucket; offset < counts.length(); offset += BUCKETS) {
+            total += counts.get(offset);
+        }
+        return total;
+    }
+
+    private static int stripeOffset() {
+        long id = Thread.currentThread().threadId();
+        int hash = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return ((hash >>> 16) & (STRIPES - 1)) * BUCKETS;
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return (1L << exponent) + (bucket % SUB_BUCKETS + 1) * width - 1;
+    }
+}
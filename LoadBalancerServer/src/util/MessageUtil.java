@@ -1,15 +1,36 @@
 package util;
 
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
 
 public class MessageUtil {
 
     public static String getServerRegisterMessage(String protocol,int port,int backgroundPort){
+        return getServerRegisterMessage(protocol, port, backgroundPort, 1, 0);
+    }
+
+    public static String getServerRegisterMessage(String protocol,int port,int backgroundPort,int weight,int maxConnections){
         JsonObject jsonObject = new JsonObject();
         jsonObject.addProperty("cmd","register");
         jsonObject.addProperty("protocol", protocol);
         jsonObject.addProperty("port", port);
         jsonObject.addProperty("bp", backgroundPort);
+        jsonObject.addProperty("weight", weight);
+        jsonObject.addProperty("maxConn", maxConnections);
+        return jsonObject.toString();
+    }
+
+    public static String getServerWeightMessage(String protocol,int port,int backgroundPort,int weight,int maxConnections){
+        JsonObject jsonObject = new JsonObject();
+        jsonObject.addProperty("cmd","weight");
+        jsonObject.addProperty("protocol", protocol);
+        jsonObject.addProperty("port", port);
+        jsonObject.addProperty("bp", backgroundPort);
+        jsonObject.addProperty("weight", weight);
+        jsonObject.addProperty("maxConn", maxConnections);
         return jsonObject.toString();
     }
 
@@ -41,12 +62,90 @@ public class MessageUtil {
         return jsonObject.toString();
     }
 
+    public static String getHealthCheckMessage(long seq){
+        JsonObject jsonObject = new JsonObject();
+        jsonObject.addProperty("cmd","hello");
+        jsonObject.addProperty("seq",seq);
+        return jsonObject.toString();
+    }
+
     public static String getHealthCheckAwkMessage(){
         JsonObject jsonObject = new JsonObject();
         jsonObject.addProperty("awk","hello");
         return jsonObject.toString();
     }
 
+    public static String getHealthCheckAwkMessage(long seq){
+        if (seq < 0) {
+            return getHealthCheckAwkMessage();
+        }
+        JsonObject jsonObject = new JsonObject();
+        jsonObject.addProperty("awk","hello");
+        jsonObject.addProperty("seq",seq);
+        return jsonObject.toString();
+    }
+
+    /**
+     * Whether a message on the client port is a control message from a server rather than client traffic.
+     */
+    public static boolean isServerRequest(String request) {
+        if (request.isEmpty() || request.charAt(0) != '{') {
+            return false;
+        }
+        try {
+            JsonObject jsonRequest = JsonParser.parseString(request).getAsJsonObject();
+            return jsonRequest.has("awk") || jsonRequest.has("cmd");
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * Parses a register, weight or unregister command sent by a server.
+     * Throws IllegalArgumentException when the command is not an object or a field is missing or not a value.
+     */
+    public static ServerCommand parseServerCommand(String request){
+        JsonElement element = JsonParser.parseString(request);
+        if (!element.isJsonObject()) {
+            throw new IllegalArgumentException("Server command is not a JSON object");
+        }
+        JsonObject jsonRequest = element.getAsJsonObject();
+        String cmd = getField(jsonRequest, "cmd").getAsString();
+        String protocol = getField(jsonRequest, "protocol").getAsString();
+        int bp = getField(jsonRequest, "bp").getAsInt();
+        int weight = jsonRequest.has("weight") ? getField(jsonRequest, "weight").getAsInt() : 1;
+        int maxConnections = jsonRequest.has("maxConn") ? getField(jsonRequest, "maxConn").getAsInt() : 0;
+        return new ServerCommand(cmd, protocol, bp, weight, maxConnections);
+    }
+
+    private static JsonPrimitive getField(JsonObject jsonObject, String name) {
+        JsonElement field = jsonObject.get(name);
+        if (field == null || !field.isJsonPrimitive()) {
+            throw new IllegalArgumentException("Missing or invalid field: " + name);
+        }
+        return field.getAsJsonPrimitive();
+    }
+
+    public static boolean isHealthCheckAwkMessage(String message){
+        JsonObject jsonObject = parseObject(message);
+        return jsonObject != null && jsonObject.has("awk") && "hello".equals(jsonObject.get("awk").getAsString());
+    }
+
+    /**
+     * Sequence id of a health check or its reply, or -1 when the message carries none.
+     */
+    public static long getHealthCheckSeq(String message){
+        JsonObject jsonObject = parseObject(message);
+        if (jsonObject == null || !jsonObject.has("seq")) {
+            return -1;
+        }
+        try {
+            return jsonObject.get("seq").getAsLong();
+        } catch (NumberFormatException | UnsupportedOperationException e) {
+            return -1;
+        }
+    }
+
     public static String getTCPServerData(int port,String request){
         JsonObject jsonObject = new JsonObject();
         jsonObject.addProperty("protocol", "tcp");
@@ -80,4 +179,18 @@ public class MessageUtil {
                 .replace("{", "{\n")
                 .replace("}", "\n}");
     }
-}
\ No newline at end of file
+
+    private static JsonObject parseObject(String message){
+        if (message == null || message.isEmpty() || message.charAt(0) != '{') {
+            return null;
+        }
+        try {
+            return JsonParser.parseString(message).getAsJsonObject();
+        } catch (JsonParseException | IllegalStateException e) {
+            return null;
+        }
+    }
+
+    public record ServerCommand(String cmd, String protocol, int backgroundPort, int weight, int maxConnections) {
+    }
+}
@@ -0,0 +1,172 @@
+package util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Writes Prometheus text exposition format straight into a direct buffer that is kept between renders.
+ * Names, label values and numbers are encoded byte by byte, so once the buffer has grown to the size of a
+ * typical scrape, rendering allocates nothing. Names and label values are expected to be ASCII.
+ * Not thread-safe.
+ */
+public class PrometheusWriter {
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private ByteBuffer buffer;
+    private boolean hasLabels;
+
+    public PrometheusWriter(int initialCapacity) {
+        buffer = ByteBuffer.allocateDirect(initialCapacity);
+    }
+
+    /**
+     * Starts a new render, discarding the previous one.
+     */
+    public PrometheusWriter reset() {
+        buffer.clear();
+        return this;
+    }
+
+    /**
+     * The rendered bytes, ready to be written to a channel.
+     */
+    public ByteBuffer flip() {
+        return buffer.flip();
+    }
+
+    public PrometheusWriter family(String name, String type, String help) {
+        ascii("# HELP ").ascii(name).put(' ').ascii(help).put('\n');
+        return ascii("# TYPE ").ascii(name).put(' ').ascii(type).put('\n');
+    }
+
+    public PrometheusWriter sample(String name) {
+        hasLabels = false;
+        return ascii(name);
+    }
+
+    public PrometheusWriter sample(String name, String suffix) {
+        hasLabels = false;
+        return ascii(name).ascii(suffix);
+    }
+
+    public PrometheusWriter label(String key, String value) {
+        labelStart(key);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' || c == '"') {
+                put('\\').put(c);
+            } else if (c == '\n') {
+                put('\\').put('n');
+            } else {
+                put(c);
+            }
+        }
+        return put('"');
+    }
+
+    public PrometheusWriter label(String key, long value) {
+        labelStart(key);
+        return number(value).put('"');
+    }
+
+    /**
+     * A label whose value is a duration written in seconds, as histogram bucket bounds are.
+     */
+    public PrometheusWriter secondsLabel(String key, long nanos) {
+        labelStart(key);
+        return seconds(nanos).put('"');
+    }
+
+    public PrometheusWriter value(long value) {
+        closeLabels();
+        put(' ');
+        return number(value).put('\n');
+    }
+
+    public PrometheusWriter valueSeconds(long nanos) {
+        closeLabels();
+        put(' ');
+        return seconds(nanos).put('\n');
+    }
+
+    public PrometheusWriter ascii(String text) {
+        ensure(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            buffer.put((byte) text.charAt(i));
+        }
+        return this;
+    }
+
+    public PrometheusWriter number(long value) {
+        if (value == Long.MIN_VALUE) {
+            return ascii("-9223372036854775808");
+        }
+        ensure(20);
+        if (value < 0) {
+            buffer.put((byte) '-');
+            value = -value;
+        }
+        long divisor = 1;
+        while (divisor <= value / 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            buffer.put((byte) ('0' + value / divisor % 10));
+        }
+        return this;
+    }
+
+    private PrometheusWriter seconds(long nanos) {
+        number(nanos / NANOS_PER_SECOND);
+        long fraction = Math.abs(nanos % NANOS_PER_SECOND);
+        if (fraction == 0) {
+            return this;
+        }
+        int digits = 9;
+        while (fraction % 10 == 0) {
+            fraction /= 10;
+            digits--;
+        }
+        put('.');
+        for (long divisor = pow10(digits - 1); divisor > 0; divisor /= 10) {
+            put((char) ('0' + fraction / divisor % 10));
+        }
+        return this;
+    }
+
+    private void labelStart(String key) {
+        put(hasLabels ? ',' : '{');
+        hasLabels = true;
+        ascii(key).put('=').put('"');
+    }
+
+    private void closeLabels() {
+        if (hasLabels) {
+            put('}');
+            hasLabels = false;
+        }
+    }
+
+    private PrometheusWriter put(char c) {
+        ensure(1);
+        buffer.put((byte) c);
+        return this;
+    }
+
+    private void ensure(int bytes) {
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+        ByteBuffer grown = ByteBuffer.allocateDirect(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+        grown.put(buffer.flip());
+        buffer = grown;
+    }
+
+    private static long pow10(int exponent) {
+        long result = 1;
+        for (int i = 0; i < exponent; i++) {
+            result *= 10;
+        }
+        return result;
+    }
+}
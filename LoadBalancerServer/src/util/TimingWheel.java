@@ -0,0 +1,198 @@
+package util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
+/**
+ * Hashed hierarchical timing wheel (Varghese and Lauck) driven by the owning event loop.
+ * Four levels of 256 slots; timers are intrusive list nodes, so scheduling and cancelling are O(1)
+ * and a far timer is cascaded at most three times before it fires.
+ * Not thread-safe: schedule, cancel and advance must all run on the loop thread.
+ */
+public class TimingWheel {
+
+    public enum Kind {
+        CONNECT, REQUEST, IDLE, HEALTH_PROBE;
+
+        private final LongAdder expired = new LongAdder();
+
+        public void recordExpired() {
+            expired.increment();
+        }
+
+        public long getExpiredCount() {
+            return expired.sum();
+        }
+    }
+
+    private static final int LEVELS = 4;
+    private static final int SLOT_BITS = 8;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final long MAX_DELAY_TICKS = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+    private final Timeout[][] slots = new Timeout[LEVELS][SLOTS];
+    private final long tickNanos;
+    private final long startNanos = System.nanoTime();
+    private long currentTick = 0;
+    private int size = 0;
+
+    public TimingWheel(long tickMillis) {
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, tickMillis));
+    }
+
+    public Timeout schedule(Kind kind, long delayMillis, Runnable task) {
+        long delayTicks = Math.max(1, (TimeUnit.MILLISECONDS.toNanos(delayMillis) + tickNanos - 1) / tickNanos);
+        // Anchor on real time: the wheel may lag behind until the loop next calls advance().
+        long nowTick = Math.max(currentTick, (System.nanoTime() - startNanos) / tickNanos);
+        Timeout timeout = new Timeout(kind, task, nowTick + Math.min(delayTicks, MAX_DELAY_TICKS - (nowTick - currentTick)));
+        add(timeout);
+        size++;
+        return timeout;
+    }
+
+    public boolean cancel(Timeout timeout) {
+        if (timeout == null || timeout.level < 0) {
+            return false;
+        }
+        unlink(timeout);
+        size--;
+        return true;
+    }
+
+    /**
+     * Fires every timer whose deadline has passed and returns how many fired.
+     */
+    public int advance() {
+        long targetTick = (System.nanoTime() - startNanos) / tickNanos;
+        int fired = 0;
+        while (currentTick < targetTick) {
+            currentTick++;
+            cascade();
+            int index = (int) (currentTick & SLOT_MASK);
+            Timeout timeout;
+            while ((timeout = slots[0][index]) != null) {
+                unlink(timeout);
+                size--;
+                timeout.kind.recordExpired();
+                fired++;
+                try {
+                    timeout.task.run();
+                } catch (RuntimeException e) {
+                    LoggingUtil.logAsync(Level.SEVERE,"Timer task failed: " + e.getMessage());
+                }
+            }
+        }
+        return fired;
+    }
+
+    /**
+     * Milliseconds the loop may block before the next timer can fire, or 0 when no timer is pending.
+     */
+    public long getWaitMillis() {
+        if (size == 0) {
+            return 0;
+        }
+        long ticks = SLOTS - (currentTick & SLOT_MASK);
+        for (int i = 1; i < SLOTS; i++) {
+            if (slots[0][(int) ((currentTick + i) & SLOT_MASK)] != null) {
+                ticks = i;
+                break;
+            }
+        }
+        long deadlineNanos = startNanos + (currentTick + ticks) * tickNanos;
+        long waitNanos = deadlineNanos - System.nanoTime();
+        return Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos) + 1);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public static String getStats() {
+        StringBuilder stats = new StringBuilder();
+        for (Kind kind : Kind.values()) {
+            if (!stats.isEmpty()) {
+                stats.append(" ");
+            }
+            stats.append(kind.name().toLowerCase()).append("=").append(kind.getExpiredCount());
+        }
+        return stats.toString();
+    }
+
+    private void add(Timeout timeout) {
+        long delta = timeout.deadlineTick - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        int index = (int) ((timeout.deadlineTick >>> (SLOT_BITS * level)) & SLOT_MASK);
+        Timeout head = slots[level][index];
+        timeout.level = level;
+        timeout.index = index;
+        timeout.prev = null;
+        timeout.next = head;
+        if (head != null) {
+            head.prev = timeout;
+        }
+        slots[level][index] = timeout;
+    }
+
+    private void unlink(Timeout timeout) {
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            slots[timeout.level][timeout.index] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.level = -1;
+    }
+
+    private void cascade() {
+        // Redistribute the higher-level slots whose window starts at this tick, highest level first.
+        int highest = 0;
+        while (highest < LEVELS - 1 && (currentTick & ((1L << (SLOT_BITS * (highest + 1))) - 1)) == 0) {
+            highest++;
+        }
+        for (int level = highest; level >= 1; level--) {
+            int index = (int) ((currentTick >>> (SLOT_BITS * level)) & SLOT_MASK);
+            Timeout timeout = slots[level][index];
+            slots[level][index] = null;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                add(timeout);
+                timeout = next;
+            }
+        }
+    }
+
+    public static final class Timeout {
+
+        private final Kind kind;
+        private final Runnable task;
+        private final long deadlineTick;
+        private Timeout prev;
+        private Timeout next;
+        private int level = -1;
+        private int index;
+
+        private Timeout(Kind kind, Runnable task, long deadlineTick) {
+            this.kind = kind;
+            this.task = task;
+            this.deadlineTick = deadlineTick;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public boolean isPending() {
+            return level >= 0;
+        }
+    }
+}